@@ -0,0 +1,145 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.infinitekind.moneydance.model.AbstractTxn;
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.Txn;
+import com.infinitekind.moneydance.model.TxnSearch;
+
+/**
+ * Class to total the transactions of every income and expense category by
+ * month for one or more years. All of the years are totalled with a single
+ * pass through the transactions.
+ *
+ * @author  Jerry Jones
+ */
+public class ActualSpending implements TxnSearch {
+	// The years to total
+	private final Set<Integer> years;
+
+	// Totals by year then by category UUID. totals[0] is the sum of the other
+	// totals, totals[1]...totals[12] are the totals by month.
+	private final Map<Integer, Map<String, long[]>> totals = new HashMap<Integer, Map<String, long[]>>();
+
+	/**
+	 * Construct an ActualSpending object to return the actual spending totals
+	 * by month for all categories for the years requested.
+	 * 
+	 * @param book - The account book to total.
+	 * @param years - The years to total (YYYY).
+	 */
+	public ActualSpending(final AccountBook book, final Set<Integer> years) {
+		// Save the years for the search
+		this.years = years;
+
+		// Create the totals for each year so that years without transactions are still known
+		for (final Integer year : years)
+			this.totals.put(year, new HashMap<String, long[]>());
+
+		if (years.isEmpty())
+			return;
+
+		// Calculate totals by year, category and month
+		for (final AbstractTxn txnLine : book.getTransactionSet().getTransactions(this)) 
+			{
+			final int date = txnLine.getDateInt();
+			final long[] categoryTotals = this.totals.get(date / 10000).computeIfAbsent(txnLine.getAccount().getUUID(), k -> new long[13]);
+
+			// Update the grand total of all months
+			categoryTotals[0] += txnLine.getValue();
+
+			// Update the total by month
+			categoryTotals[(date / 100) % 100] += txnLine.getValue();
+			}
+	}
+
+
+	/** 
+	 * Override for TxnSearch (see com.infinitekind.moneydance.model.TxnSearch)
+	 * 
+	 * @param transaction - The transaction to compare.
+	 * @return boolean - true if the transaction is for an income or expense
+	 * category in one of the years requested, false otherwise.
+	 */
+	@Override
+	public boolean matches(final Txn transaction) {
+		final Account acct = transaction.getAccount();
+		if ((acct == null) || ((acct.getAccountType() != Account.AccountType.INCOME) && (acct.getAccountType() != Account.AccountType.EXPENSE)))
+			return false;
+		return this.years.contains(transaction.getDateInt() / 10000);
+	}
+
+
+	/** 
+	 * Override for TxnSearch (see com.infinitekind.moneydance.model.TxnSearch)
+	 * 
+	 * @return boolean - Returns true if matches all, false otherwise.
+	 */
+	@Override
+	public boolean matchesAll() {
+		return false;
+	}
+
+
+	/** 
+	 * Check if a year was totalled.
+	 * 
+	 * @param year - The year to check (YYYY).
+	 * @return boolean - true if the year was totalled.
+	 */
+	public boolean hasYear(final int year) {
+		return this.totals.containsKey(year);
+	}
+
+
+	/** 
+	 * This method returns the totals for a category and year.
+	 * 
+	 * @param acct - The account (category) to return the totals for.
+	 * @param year - The year to return (YYYY).
+	 * @return long[] - The totals array or null if there were no transactions
+	 * for the category or the year was not totalled.
+	 * <p><b>Note:</b> totals[0] is the sum of all of the other totals.
+	 * totals[1]...totals[12] are the totals by month.
+	 */
+	public long[] getTotals(final Account acct, final int year) {
+		final Map<String, long[]> yearTotals = this.totals.get(year);
+		if (yearTotals == null)
+			return null;
+		return yearTotals.get(acct.getUUID());
+	}
+}
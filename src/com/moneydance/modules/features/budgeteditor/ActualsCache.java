@@ -0,0 +1,194 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import com.infinitekind.moneydance.model.AbstractTxn;
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.TransactionListener;
+
+/**
+ * Cache of the actual spending totals for the most recently used years. The
+ * totals for a year are calculated with a single pass through the 
+ * transactions the first time they are needed and are kept until a 
+ * transaction in that year changes. A year can also be totalled in the
+ * background ahead of time so that it is ready when it is needed.
+ *
+ * @author  Jerry Jones
+ */
+public class ActualsCache implements TransactionListener {
+    // Maximum number of years kept
+    private static final int MAX_YEARS = 4;
+
+    // Totals returned for categories without transactions
+    private static final long[] NO_TOTALS = new long[13];
+
+    // The account book the totals are for
+    private final AccountBook book;
+
+    // Thread used to total years in the background
+    private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "BudgetEditor-Actuals");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Totals by year, least recently used first. Each year is a task so that a 
+    // year being totalled in the background is only ever totalled once.
+    private final Map<Integer, FutureTask<ActualSpending>> years = new LinkedHashMap<Integer, FutureTask<ActualSpending>>(ActualsCache.MAX_YEARS + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, FutureTask<ActualSpending>> eldest) {
+            return this.size() > ActualsCache.MAX_YEARS;
+        }
+    };
+
+    /**
+     * Constructor to start caching the actual spending for an account book.
+     * 
+     * @param book - The account book to total.
+     */
+    public ActualsCache(final AccountBook book) {
+        this.book = book;
+        this.book.getTransactionSet().addTransactionListener(this);
+    }
+
+
+    /** 
+     * Get the account book the totals are for.
+     * 
+     * @return AccountBook - The account book.
+     */
+    public AccountBook getBook() {
+        return this.book;
+    }
+
+
+    /** 
+     * Get the actual spending totals for a category and year.
+     * 
+     * @param acct - The account (category) to return the totals for.
+     * @param year - The year to return (YYYY).
+     * @return long[] - The totals array which must not be modified. 
+     * <p><b>Note:</b> totals[0] is the sum of all of the other totals.
+     * totals[1]...totals[12] are the totals by month.
+     */
+    public long[] getTotals(final Account acct, final int year) {
+        // Total the year in this thread if it isn't in the cache yet
+        final FutureTask<ActualSpending> task = this.getTask(year);
+        task.run();
+
+        // Wait for the totals in case they are being calculated in the background
+        final ActualSpending spending;
+        try 
+            {
+            spending = task.get();
+            } 
+        catch (final InterruptedException e) 
+            {
+            Thread.currentThread().interrupt();
+            return ActualsCache.NO_TOTALS;
+            }
+        catch (final ExecutionException e) 
+            {
+            System.err.println("ERROR: Unable to total actual spending for "+year+": "+e.getCause());
+            return ActualsCache.NO_TOTALS;
+            }
+
+        final long[] totals = spending.getTotals(acct, year);
+        return (totals != null) ? totals : ActualsCache.NO_TOTALS;
+    }
+
+
+    /** 
+     * Start totalling the actual spending for a year in the background if it 
+     * isn't already in the cache. This is called when a pop-up menu is shown so
+     * that the menu items using the actuals don't have to wait for the totals.
+     * 
+     * @param year - The year to total (YYYY).
+     */
+    public void prefetch(final int year) {
+        final FutureTask<ActualSpending> task = this.getTask(year);
+        if (!task.isDone())
+            ActualsCache.PREFETCHER.execute(task);
+    }
+
+
+    /** 
+     * Get the task that totals a year, creating it if the year isn't in the 
+     * cache. A task only runs once no matter how many threads run it.
+     * 
+     * @param year - The year to total (YYYY).
+     * @return FutureTask&lt;ActualSpending&gt; - The task for the year.
+     */
+    private synchronized FutureTask<ActualSpending> getTask(final int year) {
+        FutureTask<ActualSpending> task = this.years.get(year);
+        if (task == null)
+            {
+            task = new FutureTask<ActualSpending>(() -> new ActualSpending(this.book, Collections.singleton(year)));
+            this.years.put(year, task);
+            }
+        return task;
+    }
+
+
+    /** 
+     * Stop listening for transaction changes and forget all totals.
+     */
+    public synchronized void close() {
+        this.book.getTransactionSet().removeTransactionListener(this);
+        this.years.clear();
+    }
+
+
+    @Override
+    public synchronized void transactionAdded(final AbstractTxn txn) {
+        this.years.remove(txn.getDateInt() / 10000);
+    }
+
+    @Override
+    public synchronized void transactionModified(final AbstractTxn txn) {
+        // The date may have moved to another year
+        this.years.clear();
+    }
+
+    @Override
+    public synchronized void transactionRemoved(final AbstractTxn txn) {
+        this.years.remove(txn.getDateInt() / 10000);
+    }
+}
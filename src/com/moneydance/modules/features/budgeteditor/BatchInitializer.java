@@ -0,0 +1,235 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.Budget;
+
+/**
+* Class to initialize several budgets and years at once.
+* Each job initializes one budget year from either the prior year of a budget
+* or the prior year's actual spending. The actual spending for every year 
+* needed is totalled with a single pass through the transactions and each 
+* budget's items are only indexed once. The budget items are synced to 
+* Moneydance once all of the jobs have been written.
+*
+* @author  Jerry Jones
+*/
+public class BatchInitializer {
+    // The current data file
+    private final AccountBook book;
+
+    // When true, runs of equal months are stored as a single budget item
+    private final boolean compact;
+
+    // The jobs to run
+    private final List<Job> jobs = new ArrayList<Job>();
+
+    // The number of budget years written
+    private int yearsWritten = 0;
+
+    // The number of budget items written
+    private int itemsWritten = 0;
+
+    // Problems found listing the categories
+    private final List<String> errors = new ArrayList<String>();
+
+    /**
+    * A single budget year to initialize.
+    */
+    public static final class Job {
+        // The budget to initialize
+        final Budget target;
+
+        // The budget year to initialize
+        final int year;
+
+        // The budget to copy the prior year from or null to use the prior year's actuals
+        final Budget source;
+
+        /**
+         * Constructor for a job.
+         * 
+         * @param target - The budget to initialize.
+         * @param year - The budget year to initialize.
+         * @param source - The budget to copy the prior year from or null to 
+         * use the prior year's actual spending.
+         */
+        public Job(final Budget target, final int year, final Budget source) {
+            this.target = target;
+            this.year = year;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Constructor for the batch initializer.
+     * 
+     * @param book - The account book in use.
+     * @param compact - true to store runs of equal months as a single item.
+     */
+    public BatchInitializer(final AccountBook book, final boolean compact) {
+        this.book = book;
+        this.compact = compact;
+    }
+
+
+    /** 
+     * Add a job to the batch.
+     * 
+     * @param job - The job to add.
+     */
+    public void add(final Job job) {
+        this.jobs.add(job);
+    }
+
+
+    /** 
+     * Run all of the jobs in the batch.
+     */
+    public void run() {
+        // Run the earliest years first so that a year copied from the prior 
+        // year of the same budget picks up that year if it's also in the batch
+        this.jobs.sort(Comparator.comparingInt(j -> j.year));
+
+        // Total the actual spending for all of the years needed in one pass
+        final Set<Integer> actualYears = new TreeSet<Integer>();
+        for (final Job job : this.jobs)
+            {
+            if (job.source == null)
+                actualYears.add(job.year - 1);
+            }
+        final ActualSpending actuals = new ActualSpending(this.book, actualYears);
+
+        // Get the categories that can be budgeted
+        final List<Account> categories = this.getCategories();
+
+        // Index and writer for each budget
+        final Map<Budget, BudgetItemIndex> indexes = new IdentityHashMap<Budget, BudgetItemIndex>();
+        final Map<Budget, BudgetItemWriter> writers = new IdentityHashMap<Budget, BudgetItemWriter>();
+
+        for (final Job job : this.jobs)
+            {
+            final BudgetItemIndex targetIndex = indexes.computeIfAbsent(job.target, BudgetItemIndex::new);
+            final BudgetItemWriter writer = writers.computeIfAbsent(job.target, b -> new BudgetItemWriter(b, targetIndex, this.compact));
+            final BudgetItemIndex sourceIndex = (job.source != null) ? indexes.computeIfAbsent(job.source, BudgetItemIndex::new) : null;
+
+            for (final Account acct : categories)
+                {
+                // Get the new values from the prior year
+                final long[] values = new long[13];
+                if (sourceIndex != null)
+                    sourceIndex.getValues(acct.getUUID(), job.year - 1, values);
+                else
+                    {
+                    final long[] totals = actuals.getTotals(acct, job.year - 1);
+                    if (totals != null)
+                        {
+                        for (int month = 1; month <= 12; month++)
+                            {
+                            // If this is an income category then the sign has to be changed
+                            values[month] = (acct.getAccountType() == Account.AccountType.INCOME) ? -totals[month] : totals[month];
+                            }
+                        }
+                    }
+
+                // Only the months that are different need to be written
+                final long[] current = new long[13];
+                targetIndex.getValues(acct.getUUID(), job.year, current);
+                final boolean[] changed = new boolean[12];
+                boolean anyChanged = false;
+                for (int month = 1; month <= 12; month++)
+                    {
+                    changed[month - 1] = (values[month] != current[month]);
+                    anyChanged |= changed[month - 1];
+                    }
+
+                if ((anyChanged) || (this.compact))
+                    writer.write(acct, job.year, values, changed);
+                }
+            this.yearsWritten++;
+            }
+
+        // Now sync all of the changed items
+        for (final BudgetItemWriter writer : writers.values())
+            {
+            writer.flush();
+            this.itemsWritten += writer.getItemsWritten();
+            }
+    }
+
+
+    /** 
+     * Get the categories that can be budgeted. These are the categories the
+     * editor lists that have no active children.
+     * 
+     * @return List<Account> - The categories.
+     */
+    private List<Account> getCategories() {
+        final List<Account> categories = new ArrayList<Account>();
+        final BudgetCategoriesList list = TableModel.loadCategories(this.book);
+        for (final String error : list.getErrors())
+            {
+            // Only report each problem once
+            if (!this.errors.contains(error))
+                this.errors.add(error);
+            }
+        for (final BudgetCategoryItem item : list.getCategoryItems())
+            {
+            // Roll-up categories are not budgeted
+            if ((!item.hasChildren()) && (item.getAccount() != null))
+                categories.add(item.getAccount());
+            }
+        return categories;
+    }
+
+
+    /** 
+     * Get a message describing what was done.
+     * 
+     * @return String - The message to show the user.
+     */
+    public String getReport() {
+        final StringBuilder report = new StringBuilder("Initialized "+this.yearsWritten+" budget year(s). "+this.itemsWritten+" budget item(s) were written.");
+        for (final String error : this.errors)
+            report.append("\n\n").append(error);
+        return report.toString();
+    }
+}
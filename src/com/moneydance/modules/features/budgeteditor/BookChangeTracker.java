@@ -0,0 +1,282 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.AccountListener;
+import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.BudgetItem;
+import com.infinitekind.moneydance.model.BudgetListener;
+
+/**
+* Tracks the changes to categories and budget items made in Moneydance since
+* the table data was loaded so that the table can be refreshed by applying
+* only the changes rather than loading all of the data again. A version is
+* also kept for every budget so that values kept loaded for other budgets
+* can be checked before they are shown again.
+*
+* @author  Jerry Jones
+*/
+class BookChangeTracker implements AccountListener, BudgetListener {
+    // The data file being tracked
+    private final AccountBook book;
+
+    // The budget whose items are being tracked
+    private Budget budget;
+
+    // When true categories were added or deleted
+    private boolean structureChanged = false;
+
+    // When true the budget itself was changed or removed
+    private boolean budgetChanged = false;
+
+    // UUIDs of the categories that were modified
+    private Set<String> modifiedCategories = new HashSet<String>();
+
+    // UUIDs of the categories whose budget items were changed
+    private Set<String> changedValues = new HashSet<String>();
+
+    // The number of times each budget was changed, by budget key
+    private final Map<String, Integer> versions = new HashMap<String, Integer>();
+
+    /**
+    * The changes made since tracking started.
+    */
+    static final class Changes {
+        // When true categories were added or deleted
+        final boolean structureChanged;
+
+        // When true the budget itself was changed or removed
+        final boolean budgetChanged;
+
+        // UUIDs of the categories that were modified
+        final Set<String> modifiedCategories;
+
+        // UUIDs of the categories whose budget items were changed
+        final Set<String> changedValues;
+
+        /**
+         * Constructor for the changes.
+         * 
+         * @param structureChanged - true if categories were added or deleted.
+         * @param budgetChanged - true if the budget itself was changed or removed.
+         * @param modifiedCategories - UUIDs of the categories that were modified.
+         * @param changedValues - UUIDs of the categories whose budget items were changed.
+         */
+        Changes(final boolean structureChanged, final boolean budgetChanged, final Set<String> modifiedCategories, final Set<String> changedValues) {
+            this.structureChanged = structureChanged;
+            this.budgetChanged = budgetChanged;
+            this.modifiedCategories = modifiedCategories;
+            this.changedValues = changedValues;
+        }
+
+        /** 
+         * Determine if anything changed.
+         * 
+         * @return boolean - true if nothing changed.
+         */
+        boolean isEmpty() {
+            return (!this.structureChanged) && (!this.budgetChanged) && (this.modifiedCategories.isEmpty()) && (this.changedValues.isEmpty());
+        }
+    }
+
+    /**
+     * Constructor to start listening for changes to a data file.
+     * 
+     * @param book - The data file to track.
+     */
+    BookChangeTracker(final AccountBook book) {
+        this.book = book;
+        this.book.addAccountListener(this);
+        this.book.getBudgets().addListener(this);
+    }
+
+
+    /** 
+     * Start tracking the changes to a budget, forgetting any earlier changes.
+     * This is called when the table data is loaded.
+     * 
+     * @param budget - The budget whose items are tracked.
+     */
+    synchronized void track(final Budget budget) {
+        this.budget = budget;
+        this.take();
+    }
+
+
+    /** 
+     * Get the changes made since tracking started or since the changes were
+     * last taken and start tracking again.
+     * 
+     * @return Changes - The changes made.
+     */
+    synchronized Changes take() {
+        final Changes changes = new Changes(this.structureChanged, this.budgetChanged, this.modifiedCategories, this.changedValues);
+        this.structureChanged = false;
+        this.budgetChanged = false;
+        this.modifiedCategories = new HashSet<String>();
+        this.changedValues = new HashSet<String>();
+        return changes;
+    }
+
+
+    /** 
+     * Get the version of a budget. The version changes whenever the budget or
+     * any of its items change so values loaded from an older version of the
+     * budget are known to be out of date.
+     * 
+     * @param budgetKey - The key of the budget.
+     * @return int - The version of the budget.
+     */
+    synchronized int getVersion(final String budgetKey) {
+        final Integer version = this.versions.get(budgetKey);
+        return (version == null) ? 0 : version.intValue();
+    }
+
+
+    /** 
+     * Record that a budget changed.
+     * 
+     * @param changed - The budget that changed.
+     */
+    private void budgetVersionChanged(final Budget changed) {
+        if (changed != null)
+            this.versions.put(changed.getKey(), Integer.valueOf(this.getVersion(changed.getKey()) + 1));
+    }
+
+
+    /** 
+     * Stop listening for changes.
+     */
+    void close() {
+        this.book.removeAccountListener(this);
+        this.book.getBudgets().removeListener(this);
+    }
+
+
+    /** 
+     * Determine if an account is a category.
+     * 
+     * @param acct - The account to check.
+     * @return boolean - true if the account is an income or expense category.
+     */
+    private static boolean isCategory(final Account acct) {
+        return (acct != null) && ((acct.getAccountType() == Account.AccountType.INCOME) || (acct.getAccountType() == Account.AccountType.EXPENSE));
+    }
+
+
+    /** 
+     * Determine if a budget is the one being tracked.
+     * 
+     * @param changed - The budget that changed.
+     * @return boolean - true if the budget is being tracked.
+     */
+    private boolean isTracked(final Budget changed) {
+        return (this.budget != null) && (changed != null) && ((changed == this.budget) || (this.budget.getKey().equals(changed.getKey())));
+    }
+
+
+    /** 
+     * Record a change to a budget item of the tracked budget.
+     * 
+     * @param changed - The budget the item belongs to.
+     * @param item - The item that changed.
+     */
+    private synchronized void itemChanged(final Budget changed, final BudgetItem item) {
+        this.budgetVersionChanged(changed);
+        if ((this.isTracked(changed)) && (item.getTransferAccount() != null))
+            this.changedValues.add(item.getTransferAccount().getUUID());
+    }
+
+
+    @Override
+    public synchronized void accountAdded(final Account parentAccount, final Account newAccount) {
+        if (BookChangeTracker.isCategory(newAccount))
+            this.structureChanged = true;
+    }
+
+    @Override
+    public void accountBalanceChanged(final Account account) {
+        // Balances are not shown
+    }
+
+    @Override
+    public synchronized void accountDeleted(final Account parentAccount, final Account deletedAccount) {
+        if (BookChangeTracker.isCategory(deletedAccount))
+            this.structureChanged = true;
+    }
+
+    @Override
+    public synchronized void accountModified(final Account account) {
+        if (BookChangeTracker.isCategory(account))
+            this.modifiedCategories.add(account.getUUID());
+    }
+
+    @Override
+    public void budgetAdded(final Budget added) {
+        // Other budgets are not shown
+    }
+
+    @Override
+    public synchronized void budgetRemoved(final Budget removed) {
+        this.budgetVersionChanged(removed);
+        if (this.isTracked(removed))
+            this.budgetChanged = true;
+    }
+
+    @Override
+    public synchronized void budgetModified(final Budget modified) {
+        this.budgetVersionChanged(modified);
+        if (this.isTracked(modified))
+            this.budgetChanged = true;
+    }
+
+    @Override
+    public void budgetItemAdded(final Budget changed, final BudgetItem item) {
+        this.itemChanged(changed, item);
+    }
+
+    @Override
+    public void budgetItemRemoved(final Budget changed, final BudgetItem item) {
+        this.itemChanged(changed, item);
+    }
+
+    @Override
+    public void budgetItemModified(final Budget changed, final BudgetItem item) {
+        this.itemChanged(changed, item);
+    }
+}
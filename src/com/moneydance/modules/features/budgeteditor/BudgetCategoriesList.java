@@ -31,16 +31,16 @@
 package com.moneydance.modules.features.budgeteditor;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-
-import javax.swing.JOptionPane;
 
 import com.infinitekind.moneydance.model.Account;
 import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.CurrencyType;
 
 /**
 * Create a list to hold budget category items
@@ -56,6 +56,16 @@ public class BudgetCategoriesList {
 
     // Create an empty LinkedHashMap to hold the data
     private LinkedHashMap<String, BudgetCategoryItem> lhm = null;
+
+    // The categories by row
+    private final ArrayList<BudgetCategoryItem> rows = new ArrayList<BudgetCategoryItem>();
+
+    // The budget values currently shown for the categories
+    private BudgetValues values = null;
+
+    // Problems found while adding categories. The list can be built on any
+    // thread so they're reported by whoever shows it.
+    private final List<String> errors = new ArrayList<String>();
    
     // Create an object to track the parent as categories are added to the list
     private final parentTracker tracker = new parentTracker();
@@ -85,6 +95,47 @@ public class BudgetCategoriesList {
     }
 
 
+    /** 
+     * This method returns all of the categories in the list in the order they
+     * were added.
+     * 
+     * @return Collection<BudgetCategoryItem> - The categories in the list.
+     */
+    public Collection<BudgetCategoryItem> getCategoryItems() {
+        return this.rows;
+    }
+
+
+    /** 
+     * This method returns the problems found while adding categories.
+     * 
+     * @return List<String> - The messages to show the user, empty if there were none.
+     */
+    public List<String> getErrors() {
+        return this.errors;
+    }
+
+
+    /** 
+     * This method returns the budget values currently shown for the categories.
+     * 
+     * @return BudgetValues - The budget values or null if none have been set.
+     */
+    public BudgetValues getValues() {
+        return this.values;
+    }
+
+
+    /** 
+     * This method sets the budget values to show for the categories.
+     * 
+     * @param values - The budget values. They must have been created for this list.
+     */
+    public void setValues(final BudgetValues values) {
+        this.values = values;
+    }
+
+
     /** 
      * Add a special category to the list - Totals, Income or Expense for example.
      * 
@@ -99,11 +150,30 @@ public class BudgetCategoriesList {
      * for this category.
      */
     public BudgetCategoryItem add(final String UUID, final String fullName, final Account.AccountType type, final int level) {
+        return this.add(UUID, fullName, type, this.book.getCurrencies().getBaseType(), level, true);
+    }
+
+
+    /** 
+     * Add a category without an account object to the list. The values of
+     * these categories can be rolled up without a Moneydance account book.
+     * 
+     * @param UUID - The UUID of the category to add.
+     * @param fullName - The name of the category to add.
+     * @param type - The type of this category.
+     * @param currencyType - The currency of the category's values.
+     * @param level - The indent level of this category.
+     * @param hasChildren - true if categories will be added under this one.
+     * @return BudgetCategoryItem - Returns the BudgetCategoryItem object created 
+     * for this category.
+     */
+    BudgetCategoryItem add(final String UUID, final String fullName, final Account.AccountType type, final CurrencyType currencyType, final int level, final boolean hasChildren) {
         // Create a new budget category item for this category
-        final BudgetCategoryItem bcItem = new BudgetCategoryItem(fullName, type, this.book.getCurrencies().getBaseType(), this.tracker.getParent(level, true), level);
+        final BudgetCategoryItem bcItem = new BudgetCategoryItem(fullName, type, currencyType, this.tracker.getParent(level, hasChildren), level, hasChildren, this, this.rows.size());
         
         // Put the item in the hash map
         this.lhm.put(UUID, bcItem);
+        this.rows.add(bcItem);
 
         // Return the new item to the caller
         return bcItem;
@@ -121,15 +191,13 @@ public class BudgetCategoriesList {
      * for this category.
      */
     public BudgetCategoryItem add(final Account acct) {
-        // Prompt the user if a duplicate category is found (same parent and same
-        // type) and then exit without adding the category.   
+        // Note a duplicate category (same parent and same type) for the user and
+        // then exit without adding the category. This may not be on the event
+        // dispatch thread so the message isn't shown here.
         if (this.lhm.containsKey(acct.getUUID()))
             {
-            // Display a warning message - Duplicate UUID!
-            JOptionPane.showMessageDialog( null,
-            "The UUID "+acct.getUUID()+" has been found more than once and this one will be ignored. Something is seriously wrong here!",
-            "Error (Monthly Budget Bars)",
-            JOptionPane.ERROR_MESSAGE);
+            System.err.println("ERROR: Duplicate UUID "+acct.getUUID()+" in BudgetCategoriesList.add.");
+            this.errors.add("The UUID "+acct.getUUID()+" has been found more than once and this one will be ignored. Something is seriously wrong here!");
             return null;
             }
 
@@ -156,10 +224,11 @@ public class BudgetCategoriesList {
         final int indentLevel = BudgetCategoriesList.calcIndentLevel(fullName);
         
         // Create a new budget category item for this category
-        final BudgetCategoryItem bcItem = new BudgetCategoryItem(acct, acct.getAccountType(), acct.getCurrencyType(), this.tracker.getParent(indentLevel, hasChildren), indentLevel, hasChildren);
+        final BudgetCategoryItem bcItem = new BudgetCategoryItem(acct, acct.getAccountType(), acct.getCurrencyType(), this.tracker.getParent(indentLevel, hasChildren), indentLevel, hasChildren, this, this.rows.size());
         
         // Put the item in the hash map
         this.lhm.put(acct.getUUID(), bcItem);
+        this.rows.add(bcItem);
 
         // Return the new item to the caller
         return bcItem;
@@ -188,8 +257,25 @@ public class BudgetCategoriesList {
      * to the index provided. Returns null if the index is not valid.
      */
     public BudgetCategoryItem getCategoryItemByIndex(final int index) {
-        final Set<String> keys = this.lhm.keySet();
-        return this.lhm.get(keys.toArray()[index]);
+        return ((index >= 0) && (index < this.rows.size())) ? this.rows.get(index) : null;
+    }
+
+    
+    /** 
+     * This method returns the index of the last category that rolls up to
+     * the category at the index passed. The categories that roll up to a
+     * category always follow it in the list.
+     * 
+     * @param index - The index [0...n] of the category.
+     * @return int - The index of the last category under it or the index
+     * passed if no categories roll up to it.
+     */
+    public int getLastDescendantIndex(final int index) {
+        final int indent = this.rows.get(index).getIndentLevel();
+        int last = index;
+        while ((last + 1 < this.rows.size()) && (this.rows.get(last + 1).getIndentLevel() > indent))
+            last++;
+        return last;
     }
 
     
@@ -33,7 +33,6 @@ package com.moneydance.modules.features.budgeteditor;
 import com.infinitekind.moneydance.model.Account;
 import com.infinitekind.moneydance.model.Account.AccountType;
 import com.infinitekind.moneydance.model.CurrencyType;
-import com.infinitekind.moneydance.model.CurrencyUtil;
 
 /**
 * Class for budget category items
@@ -45,6 +44,10 @@ import com.infinitekind.moneydance.model.CurrencyUtil;
 * @author  Jerry Jones
 */
 final class BudgetCategoryItem {
+    // Marks shown before the names of categories with children
+    private static final char EXPANDED = '\u25BE';
+    private static final char COLLAPSED = '\u25B8';
+
     // The category item row of the parent item this category rolls up to if any. -1 means no parent.
     private int parentRow = -1;    
 
@@ -55,10 +58,19 @@ final class BudgetCategoryItem {
     // prepended i.e. "Fuel" not "Auto:Fuel"
     private final String shortName;
 
+    // The full name for this category when it was loaded i.e. "Auto:Fuel"
+    private final String fullName;
+
     // The indent level of this category. Used for indenting the categories when displaying them
     // and for determining the categories parent.
     private final int indentLevel;
 
+    // The category name indented per the indent level as it is displayed in the table
+    private final String label;
+
+    // The label displayed when the children of this category are hidden
+    private final String collapsedLabel;
+
     // The type of account. Account.AccountType.ROOT (Totals),
     // Account.AccountType.Income (Income) or Account.AccountType.EXPENSE (Expenses)
     private final Account.AccountType categoryType;
@@ -69,12 +81,11 @@ final class BudgetCategoryItem {
     // WHen true, this category has children and no budget values should exist for this category.
     private final boolean hasChildren; 
 
-    // budgetValues [0] is not used, [1...12] each monthly budget, [13] overall budget total for this category
-    // For special categories, the budgetValues are used for roll-up totals
-    private final Long budgetValues[] = {0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L};
+    // The list this category belongs to. The budget values are kept by the list.
+    private final BudgetCategoriesList list;
 
-    // Flags to indicate whenever a budget value has been changed and needs to be stored 
-    private final boolean dataChanged[] = {false, false, false, false, false, false, false, false, false, false, false, false};
+    // The row of this category in the list
+    private final int row;
 
     /**
      * Constructor to add a normal category as opposed to a special category.
@@ -85,17 +96,26 @@ final class BudgetCategoryItem {
      * @param parent - The parent index for this category.
      * @param indent - The indent level for this category.
      * @param hasChildren - true if this category has children, false otherwise.
+     * @param list - The list this category belongs to.
+     * @param row - The row of this category in the list.
      */
-    BudgetCategoryItem(final Account acct, final Account.AccountType type, CurrencyType currencyType, final int parent, final int indent, final boolean hasChildren ) {
+    BudgetCategoryItem(final Account acct, final Account.AccountType type, CurrencyType currencyType, final int parent, final int indent, final boolean hasChildren, final BudgetCategoriesList list, final int row) {
         // Save the account
         this.account = acct;
 
         // Save the short category name;
         this.shortName = this.account.getAccountName();
 
+        // Save the full category name
+        this.fullName = this.account.getFullAccountName();
+
         // Calculate the indent level (Count colons)
         this.indentLevel = indent;
 
+        // Build the displayed names once, categories with children show whether they're expanded
+        this.label = BudgetCategoryItem.buildLabel(this.shortName, indent, hasChildren ? BudgetCategoryItem.EXPANDED : ' ');
+        this.collapsedLabel = BudgetCategoryItem.buildLabel(this.shortName, indent, hasChildren ? BudgetCategoryItem.COLLAPSED : ' ');
+
         // Save the Category type
         this.categoryType = type;
                 
@@ -107,39 +127,58 @@ final class BudgetCategoryItem {
 
         // The parent category this ine rolls up to
         this.parentRow = parent;
+
+        // Save where this category is in the list
+        this.list = list;
+        this.row = row;
     }
 
 
     /**
-     * Constructor to add a special category (Income-Expense, Income or Expense)
+     * Constructor to add a category without an account object, such as a 
+     * special category (Income-Expense, Income or Expense)
      * 
      * @param name - The name of the special category.
      * @param type - Account.AccountType.ROOT (Totals),
      * Account.AccountType.Income (Income) or Account.AccountType.EXPENSE (Expenses)
      * @param parent - The parent index for this category.
      * @param indent - The indent level for this category.
+     * @param hasChildren - true if this category has children, false otherwise.
+     * @param list - The list this category belongs to.
+     * @param row - The row of this category in the list.
      */
-    BudgetCategoryItem(final String name, final Account.AccountType type, CurrencyType currencyType, final int parent, final int indent) {
+    BudgetCategoryItem(final String name, final Account.AccountType type, CurrencyType currencyType, final int parent, final int indent, final boolean hasChildren, final BudgetCategoriesList list, final int row) {
         // Special accounts don't have an account object
         this.account = null;
 
         // Save the short category name;
         this.shortName = name;
 
+        // Special categories don't have parents
+        this.fullName = name;
+
         // The indent level of special accounts is always 0
         this.indentLevel = indent;
 
+        // Build the displayed names once, categories with children show whether they're expanded
+        this.label = BudgetCategoryItem.buildLabel(this.shortName, indent, hasChildren ? BudgetCategoryItem.EXPANDED : ' ');
+        this.collapsedLabel = BudgetCategoryItem.buildLabel(this.shortName, indent, hasChildren ? BudgetCategoryItem.COLLAPSED : ' ');
+
         // Save the Category type
         this.categoryType = type;
                 
         // Save the currency type
         this.currencyType = currencyType;
 
-        // Special accounts always have children
-        this.hasChildren = true;
+        // Save flag indicating if this category has children, special categories always do
+        this.hasChildren = hasChildren;
 
         // The parent category this ine rolls up to
         this.parentRow = parent;
+
+        // Save where this category is in the list
+        this.list = list;
+        this.row = row;
     }
 
     
@@ -173,6 +212,58 @@ final class BudgetCategoryItem {
     }
 
     
+    /** 
+     * Get the full name of this category as it was when it was loaded.
+     * 
+     * @return String - The full name of this category.
+     */
+    public String getFullName() {
+        return this.fullName;
+    }
+
+
+    /** 
+     * Get the name of this category indented per the indent level for display.
+     * 
+     * @return String - The indented name of this category.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+
+    /** 
+     * Get the name of this category indented per the indent level for display
+     * when its children are shown or hidden.
+     * 
+     * @param collapsed - true if the children of this category are hidden.
+     * @return String - The indented name of this category.
+     */
+    public String getLabel(final boolean collapsed) {
+        return collapsed ? this.collapsedLabel : this.label;
+    }
+
+
+    /** 
+     * Build the indented name of a category. Each indent level is six spaces
+     * and all names are preceded by four spaces, the mark is shown in the
+     * last two.
+     * 
+     * @param name - The short name of the category.
+     * @param indent - The indent level of the category.
+     * @param mark - The mark to show before the name or a space for none.
+     * @return String - The indented name.
+     */
+    private static String buildLabel(final String name, final int indent, final char mark) {
+        final int spaces = 4 + (indent * 6);
+        final StringBuilder sb = new StringBuilder(spaces + name.length());
+        for (int i = 0; i < spaces; i++)
+            sb.append(' ');
+        sb.setCharAt(spaces - 2, mark);
+        return sb.append(name).toString();
+    }
+
+    
     /** 
      * Get the indent level of this category.
      * 
@@ -202,13 +293,33 @@ final class BudgetCategoryItem {
     }
     
     
+    /** 
+     * Get the row of this category in the list.
+     * 
+     * @return int - The row of this category.
+     */
+    public int getRow() {
+        return this.row;
+    }
+
+
+    /** 
+     * Get the row of the parent category this category rolls up to.
+     * 
+     * @return int - The parent row or -1 if there is no parent.
+     */
+    public int getParentRow() {
+        return this.parentRow;
+    }
+
+
     /** 
      * Get the budget total for this category.
      * 
-     * @return Long - The total of category months 1...12.
+     * @return long - The total of category months 1...12.
      */
-    public Long getBudgetTotal() {
-        return this.budgetValues[13];
+    public long getBudgetTotal() {
+        return this.getBudgetValueForMonth(13);
     }
 
     
@@ -216,10 +327,11 @@ final class BudgetCategoryItem {
      * Get the budget amount for the month requested.
      * 
      * @param month - The month to return.
-     * @return Long - The budget value for the month requested.
+     * @return long - The budget value for the month requested.
      */
-    public Long getBudgetValueForMonth(final int month) {
-        return this.budgetValues[month];
+    public long getBudgetValueForMonth(final int month) {
+        final BudgetValues values = this.list.getValues();
+        return (values != null) ? values.get(this.row, month) : 0L;
     }
 
     
@@ -230,7 +342,8 @@ final class BudgetCategoryItem {
      * @return boolean - true if the data has been changed for the requested month.
      */
     public boolean getDataChangedForMonth(final int month) {
-        return this.dataChanged[month-1];
+        final BudgetValues values = this.list.getValues();
+        return (values != null) && (values.isChanged(this.row, month));
     }
 
     
@@ -242,7 +355,7 @@ final class BudgetCategoryItem {
      * month, false otherwise.
      */
     public void setDataChangedForMonth(final int month, final boolean value) {
-        this.dataChanged[month-1] = value;
+        this.list.getValues().setChanged(this.row, month, value);
     }
     
 
@@ -257,51 +370,6 @@ final class BudgetCategoryItem {
      * or Account.AccountType.EXPENSE (Expenses)
      */
     public void setBudgetValueForMonth(final TableModel model, final BudgetCategoriesList budgetCategoriesList, final int month, long value, final AccountType type) {
-        long difference = 0;
-
-        // Get previous budgetValue
-        final Long previousValue = this.budgetValues[month];
-
-        // Calculate the difference for updating the parent
-        if ((this.parentRow == 0) && (type == Account.AccountType.EXPENSE))
-            // If the next row is the overall totals and this is an expense change 
-            // then we need to reverse the calculation
-		    difference = previousValue - value;
-        else
-            // Calculate the difference between the old value and the new one
-            difference = value - previousValue;
-
-        // Save the new value
-        this.budgetValues[month] = value;
-
-        // Keep track of the total for this budget category
-        this.budgetValues[13] = this.budgetValues[13] - previousValue + value;
-
-        // Update parent
-        if (this.parentRow != -1)
-            {
-            final BudgetCategoryItem parentItem = budgetCategoriesList.getCategoryItemByIndex(this.parentRow);
-            if (parentItem != null)
-                {
-                // Convert the difference to the parent currency if needed
-                if (this.getCurrencyType() != parentItem.getCurrencyType())
-                    difference = CurrencyUtil.convertValue(difference, this.getCurrencyType(), parentItem.getCurrencyType());
-                      
-                // Update the parent    
-                parentItem.setBudgetValueForMonth(model, budgetCategoriesList, month, parentItem.budgetValues[month] + difference, type);
-
-                // Notify all listeners that the value of the cell at [row, column] has been updated.
-                if (model != null)
-                    {
-                    // Tell the model the month value changed
-                    model.fireTableCellUpdated(this.parentRow, month);
-
-                    // Tell the model the row total value changed
-                    model.fireTableCellUpdated(this.parentRow, 13);
-                    }
-                }
-            else
-                System.err.println("ERROR: Parent item is null in setBudgetValueForMonth.");
-            }
+        budgetCategoriesList.getValues().set(model, this.row, month, value, type);
     }
 }
@@ -0,0 +1,224 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.BudgetItem;
+
+/**
+* Class to compact the budget item list of a budget.
+* Budget items with a value of 0 and budget items for categories that have
+* been deleted or made inactive are removed from the budget. The item list is
+* scanned only once. The items found can be reported before any are removed.
+*
+* <p><b>Note:</b> A zero valued item is kept if another item for the same
+* category covers any of the same dates since removing it would change the 
+* budget for those dates.
+*
+* @author  Jerry Jones
+*/
+public class BudgetCompactor {
+    // The current data file
+    private final AccountBook book;
+
+    // The number of budget items scanned
+    private int scanned = 0;
+
+    // The number of zero valued items removed
+    private int zeroItems = 0;
+
+    // The number of items removed for deleted or inactive categories
+    private int orphanedItems = 0;
+
+    // Items found for deleted or inactive categories that haven't been removed yet
+    private final List<BudgetItem> orphaned = new ArrayList<BudgetItem>();
+
+    // Zero valued items found that haven't been removed yet
+    private final List<BudgetItem> zero = new ArrayList<BudgetItem>();
+
+    /**
+     * Constructor for the budget compactor.
+     * 
+     * @param book - The account book the budgets belong to.
+     */
+    public BudgetCompactor(final AccountBook book) {
+        this.book = book;
+    }
+
+
+    /** 
+     * Remove the zero valued and orphaned items from a budget.
+     * 
+     * @param budget - The budget to compact.
+     */
+    public void compact(final Budget budget) {
+        this.scan(budget);
+        this.remove();
+    }
+
+
+    /** 
+     * Find the zero valued and orphaned items in a budget without removing
+     * them.
+     * 
+     * @param budget - The budget to scan.
+     */
+    public void scan(final Budget budget) {
+        // Items by category UUID so zero valued items can be checked for overlaps
+        final Map<String, List<BudgetItem>> byCategory = new HashMap<String, List<BudgetItem>>();
+
+        // Single pass through all of the items in the budget
+        for (final BudgetItem item : budget.getItemList().getAllItems())
+            {
+            this.scanned++;
+
+            // Is the category for this item gone or inactive?
+            final Account acct = item.getTransferAccount();
+            if ((acct == null) || (this.book.getAccountByUUID(acct.getUUID()) == null) || (acct.getAccountOrParentIsInactive()))
+                this.orphaned.add(item);
+            else
+                byCategory.computeIfAbsent(acct.getUUID(), k -> new ArrayList<BudgetItem>()).add(item);
+            }
+
+        // Find the zero valued items that don't hide another item
+        for (final List<BudgetItem> items : byCategory.values())
+            {
+            for (final BudgetItem item : items)
+                {
+                if ((item.getAmount() == 0) && (!BudgetCompactor.overlapsOther(item, items)))
+                    this.zero.add(item);
+                }
+            }
+    }
+
+
+    /** 
+     * Remove the items found by the last scan.
+     */
+    public void remove() {
+        for (final BudgetItem item : this.orphaned)
+            {
+            if (item.deleteItem())
+                this.orphanedItems++;
+            }
+        for (final BudgetItem item : this.zero)
+            {
+            if (item.deleteItem())
+                this.zeroItems++;
+            }
+        this.orphaned.clear();
+        this.zero.clear();
+    }
+
+
+    /** 
+     * Check if an item covers any of the same dates as another item.
+     * 
+     * @param item - The item to check.
+     * @param items - All of the items for the same category.
+     * @return boolean - true if another item covers any of the same dates.
+     */
+    private static boolean overlapsOther(final BudgetItem item, final List<BudgetItem> items) {
+        for (final BudgetItem other : items)
+            {
+            if ((other != item) && (item.getIntervalStartDate() <= BudgetCompactor.endDate(other)) && (other.getIntervalStartDate() <= BudgetCompactor.endDate(item)))
+                return true;
+            }
+        return false;
+    }
+
+
+    /** 
+     * @param item - The budget item.
+     * @return int - The end date of the item. An item without a valid end date repeats forever.
+     */
+    private static int endDate(final BudgetItem item) {
+        return (item.getIntervalEndDate() < item.getIntervalStartDate()) ? Integer.MAX_VALUE : item.getIntervalEndDate();
+    }
+
+
+    /** 
+     * @return int - The number of budget items scanned.
+     */
+    public int getScanned() {
+        return this.scanned;
+    }
+
+
+    /** 
+     * @return int - The number of budget items found by the scan that haven't been removed.
+     */
+    public int getFound() {
+        return this.zero.size() + this.orphaned.size();
+    }
+
+
+    /** 
+     * Get a message describing what will be removed.
+     * 
+     * @return String - The message to show the user.
+     */
+    public String getFoundReport() {
+        return "Scanned "+this.scanned+" budget items and found "+this.getFound()+" to remove:\n"+
+            "    "+this.zero.size()+" with a budget of 0\n"+
+            "    "+this.orphaned.size()+" for deleted or inactive categories";
+    }
+
+
+    /** 
+     * @return int - The total number of budget items removed.
+     */
+    public int getReclaimed() {
+        return this.zeroItems + this.orphanedItems;
+    }
+
+
+    /** 
+     * Get a message describing what was removed.
+     * 
+     * @return String - The message to show the user.
+     */
+    public String getReport() {
+        if (this.getReclaimed() == 0)
+            return "Scanned "+this.scanned+" budget items. There was nothing to remove.";
+
+        return "Scanned "+this.scanned+" budget items and removed "+this.getReclaimed()+" ("+((this.getReclaimed() * 100) / this.scanned)+"%):\n"+
+            "    "+this.zeroItems+" with a budget of 0\n"+
+            "    "+this.orphanedItems+" for deleted or inactive categories";
+    }
+}
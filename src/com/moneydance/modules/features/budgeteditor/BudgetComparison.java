@@ -0,0 +1,182 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import com.infinitekind.moneydance.model.Budget;
+
+/**
+* The differences between two budgets, or one budget in two years, for every
+* category. Both sets of values are for the rows of the same budget
+* categories list so they are compared cell by cell in a single pass. The
+* values are copied when the comparison is made so that edits made while it
+* is shown don't change one side of it.
+*
+* @author  Jerry Jones
+*/
+final class BudgetComparison {
+    // The categories compared
+    private final BudgetCategoriesList categories;
+
+    // The budget and year compared with
+    private final Budget firstBudget;
+    private final int firstYear;
+
+    // The budget and year compared
+    private final Budget secondBudget;
+    private final int secondYear;
+
+    // Copy of the values compared with by row and column
+    private final long[] first;
+
+    // Copy of the values compared by row and column
+    private final long[] second;
+
+    // The second value less the first by row and column
+    private final long[] deltas;
+
+    // The rows that differ in order
+    private final int[] differingRows;
+
+    /**
+     * Constructor to compare two sets of values for the same categories.
+     * 
+     * @param categories - The categories the values are for.
+     * @param first - The values to compare with.
+     * @param second - The values to compare.
+     */
+    BudgetComparison(final BudgetCategoriesList categories, final BudgetValues first, final BudgetValues second) {
+        this.categories = categories;
+        this.firstBudget = first.getBudget();
+        this.firstYear = first.getYear();
+        this.secondBudget = second.getBudget();
+        this.secondYear = second.getYear();
+        this.first = first.copyValues();
+        this.second = second.copyValues();
+
+        // Work out every difference at once
+        final int count = categories.getCategoryCount();
+        final boolean[] differs = new boolean[count];
+        this.deltas = new long[count * BudgetValues.COLUMNS];
+        this.differingRows = new int[BudgetValues.difference(this.first, this.second, this.deltas, differs)];
+
+        // List the rows that differ
+        int next = 0;
+        for (int row = 0; row < count; row++)
+            {
+            if (differs[row])
+                this.differingRows[next++] = row;
+            }
+    }
+
+
+    /** 
+     * @return BudgetCategoriesList - The categories compared.
+     */
+    BudgetCategoriesList getCategories() {
+        return this.categories;
+    }
+
+
+    /** 
+     * @return Budget - The budget compared with.
+     */
+    Budget getFirstBudget() {
+        return this.firstBudget;
+    }
+
+
+    /** 
+     * @return int - The budget year compared with.
+     */
+    int getFirstYear() {
+        return this.firstYear;
+    }
+
+
+    /** 
+     * @return Budget - The budget compared.
+     */
+    Budget getSecondBudget() {
+        return this.secondBudget;
+    }
+
+
+    /** 
+     * @return int - The budget year compared.
+     */
+    int getSecondYear() {
+        return this.secondYear;
+    }
+
+
+    /** 
+     * Get a value of the budget compared with.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12] or 13 for the total.
+     * @return long - The value in the category currency.
+     */
+    long getFirst(final int row, final int month) {
+        return this.first[(row * BudgetValues.COLUMNS) + month];
+    }
+
+
+    /** 
+     * Get a value of the budget compared.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12] or 13 for the total.
+     * @return long - The value in the category currency.
+     */
+    long getSecond(final int row, final int month) {
+        return this.second[(row * BudgetValues.COLUMNS) + month];
+    }
+
+
+    /** 
+     * Get the difference between the budgets.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12] or 13 for the total.
+     * @return long - The second value less the first in the category currency.
+     */
+    long getDelta(final int row, final int month) {
+        return this.deltas[(row * BudgetValues.COLUMNS) + month];
+    }
+
+
+    /** 
+     * @return int[] - The rows with a month that differs in order.
+     */
+    int[] getDifferingRows() {
+        return this.differingRows;
+    }
+}
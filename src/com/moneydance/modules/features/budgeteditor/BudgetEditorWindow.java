@@ -50,20 +50,24 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.TableColumn;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import com.infinitekind.moneydance.model.Budget;
 import com.moneydance.apps.md.controller.FeatureModuleContext;
@@ -84,6 +88,9 @@ public class BudgetEditorWindow extends JFrame
   private static final int TOP_HEIGHT = 75;
   private static final int BOTTOM_HEIGHT = 75;
 
+  // Number of years before and after this year that can be selected
+  private static final int YEAR_RANGE = 10;
+
   // Calculated frame width and height
   private int frameWidth;
   private int frameHeight;
@@ -107,20 +114,44 @@ public class BudgetEditorWindow extends JFrame
   private MyBudgetList budgetList;
   private int budgetIndex;
 
-  // Budget map
-  private final Map<String,Budget> mapBudgets = new HashMap<String,Budget>();
-
   // The year selector control
   private JComboBox<String> yearSelector;
   private int yearIndex;
 
+  // The selector for the first month shown
+  private JComboBox<String> firstMonthSelector;
+
+  // The selector for the number of months shown
+  private JComboBox<String> monthCountSelector;
+
   // The selector for category currency or base currency
   JCheckBox useCategoryCurrency;
+
+  // The selector for storing runs of equal months as a single budget item
+  JCheckBox compactStorage;
+
+  // The selector for removing unused budget items when saving
+  JCheckBox purgeOnSave;
+
+  // The selector for keeping the budget data loaded after the window closes
+  JCheckBox keepLoaded;
+
+  // The selector for showing the budget of the year before with each month
+  JCheckBox showReference;
   
   // Storage for the table used to edit budget data
   private Table table;
   TableModel tableModel = null;
 
+  // The search box used to filter the categories shown
+  private JTextField searchField;
+
+  // The scroll pane holding the table, it shows a message while the data loads
+  private JScrollPane scrollPane;
+
+  // The time the window started opening in nanoseconds
+  private final long openTime = System.nanoTime();
+
   // Panels used to display information
   JPanel topLtPanel;
   JPanel topRtPanel;
@@ -186,7 +217,7 @@ public class BudgetEditorWindow extends JFrame
     /*
     ** Budget selector - Get a list of monthly style budgets to select from
     */
-    this.budgetList = new MyBudgetList(this.context);
+    this.budgetList = MyBudgetList.getInstance(this.context.getCurrentAccountBook());
 
     // No Monthly budgets are available, so exit
     if (this.budgetList.getBudgetCount() == 0)
@@ -230,33 +261,29 @@ public class BudgetEditorWindow extends JFrame
       {
       if (BudgetEditorWindow.this.tableModel != null)
         {
-        if (!BudgetEditorWindow.this.checkValuesEdited(true))
-          {
-          // Budget values have not changed or the user doesn't care so update the table and current index
-          BudgetEditorWindow.this.tableModel.Update(BudgetEditorWindow.this.budgetList.getBudget((String)BudgetEditorWindow.this.budgetSelector.getSelectedItem()), (String)BudgetEditorWindow.this.yearSelector.getSelectedItem());
-          BudgetEditorWindow.this.budgetIndex = BudgetEditorWindow.this.budgetSelector.getSelectedIndex();
-          }
-        else
-          // Reset the selector back to the previous index since the user does not want to change it 
-          BudgetEditorWindow.this.budgetSelector.setSelectedIndex(BudgetEditorWindow.this.budgetIndex);
+        // Switch budgets, values edited in the old budget are kept until they're saved or discarded
+        BudgetEditorWindow.this.tableModel.Update(BudgetEditorWindow.this.budgetList.getBudget((String)BudgetEditorWindow.this.budgetSelector.getSelectedItem()), (String)BudgetEditorWindow.this.yearSelector.getSelectedItem());
+        BudgetEditorWindow.this.budgetIndex = BudgetEditorWindow.this.budgetSelector.getSelectedIndex();
         }
       }
     });
 
     /*
-    ** Budget year selector - Select budget year - last year, this year, and next year
+    ** Budget year selector - Select any budget year from 10 years ago to 10 years from now
     */
     final JLabel budgetYrLabel = new JLabel("Budget Year:");
     topCtrPanel.add(budgetYrLabel,GridC.getc(2, 0).insets(10, 15, 10, 15));
 
-    // Get the current year then allow selection of that year plus/minus 1 year
+    // Get the current year then allow selection of that year plus/minus YEAR_RANGE years
     final Calendar c = Calendar.getInstance();
     final int thisYear = c.get(Calendar.YEAR);
-    final String years[]={Integer.toString(thisYear-1), Integer.toString(thisYear), Integer.toString(thisYear+1)};
+    final String years[] = new String[(BudgetEditorWindow.YEAR_RANGE * 2) + 1];
+    for (int i = 0; i < years.length; i++)
+      years[i] = Integer.toString(thisYear - BudgetEditorWindow.YEAR_RANGE + i);
     this.yearSelector = new JComboBox<String>(years);
-    this.yearIndex = 1;  // Save the currently selected item in case we need to revert to it.
+    this.yearIndex = BudgetEditorWindow.YEAR_RANGE;  // Save the currently selected item in case we need to revert to it.
     this.yearSelector.setSelectedIndex(this.yearIndex);  // Set the current year as the default selection
-    this.yearSelector.setToolTipText("Select the budgeting year to edit");
+    this.yearSelector.setToolTipText("Select the budgeting year to edit, the year the first month is in");
     topCtrPanel.add(this.yearSelector, GridC.getc(3, 0).insets(10, 0, 10, 15));
     
     // Create an action listener to dispatch perform the action when this control is changed
@@ -266,19 +293,64 @@ public class BudgetEditorWindow extends JFrame
         {
         if (BudgetEditorWindow.this.tableModel != null)
           {
-          if (!BudgetEditorWindow.this.checkValuesEdited(true))
-            {
-            // Budget values have not changed or the user doesn't care so update the table and current index
-            BudgetEditorWindow.this.tableModel.Update(BudgetEditorWindow.this.budgetList.getBudget((String)BudgetEditorWindow.this.budgetSelector.getSelectedItem()), (String)BudgetEditorWindow.this.yearSelector.getSelectedItem());
-            BudgetEditorWindow.this.yearIndex = BudgetEditorWindow.this.yearSelector.getSelectedIndex();
-            }
-          else
-            // Reset the selector back to the previous index since the user does not want to change it 
-            BudgetEditorWindow.this.yearSelector.setSelectedIndex(BudgetEditorWindow.this.yearIndex);
+          // Switch years, values edited in the old year are kept until they're saved or discarded
+          BudgetEditorWindow.this.tableModel.Update(BudgetEditorWindow.this.budgetList.getBudget((String)BudgetEditorWindow.this.budgetSelector.getSelectedItem()), (String)BudgetEditorWindow.this.yearSelector.getSelectedItem());
+          BudgetEditorWindow.this.yearIndex = BudgetEditorWindow.this.yearSelector.getSelectedIndex();
           }
         }
       });
 
+    /*
+    ** First month selector - Show a fiscal year or a span of months that starts in any month
+    */
+    final JLabel firstMonthLabel = new JLabel("First Month:");
+    topCtrPanel.add(firstMonthLabel,GridC.getc(0, 1).insets(0, 0, 10, 15));
+    final String months[]={"January","February","March","April","May","June","July","August","September","October","November","December"};
+    this.firstMonthSelector = new JComboBox<String>(months);
+    this.firstMonthSelector.setSelectedIndex(this.settings.getFirstMonth() - 1);
+    this.firstMonthSelector.setToolTipText("Select the first month to show, in the budget year");
+    topCtrPanel.add(this.firstMonthSelector, GridC.getc(1, 1).insets(0, 0, 10, 15));
+
+    /*
+    ** Month count selector - Show one, two or three years of months
+    */
+    final JLabel monthCountLabel = new JLabel("Months:");
+    topCtrPanel.add(monthCountLabel,GridC.getc(2, 1).insets(0, 15, 10, 15));
+    final String counts[]={"12","24","36"};
+    this.monthCountSelector = new JComboBox<String>(counts);
+    this.monthCountSelector.setSelectedItem(Integer.toString(this.settings.getMonthCount()));
+    this.monthCountSelector.setToolTipText("Select the number of months to show");
+    topCtrPanel.add(this.monthCountSelector, GridC.getc(3, 1).insets(0, 0, 10, 15));
+
+    // Show the selected months. Edited values are kept so nothing needs to be saved first.
+    final ActionListener periodListener = new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) 
+        {
+        if (BudgetEditorWindow.this.tableModel != null)
+          BudgetEditorWindow.this.tableModel.setPeriod(BudgetEditorWindow.this.getFirstMonth(), BudgetEditorWindow.this.getMonthCount());
+        }
+      };
+    this.firstMonthSelector.addActionListener(periodListener);
+    this.monthCountSelector.addActionListener(periodListener);
+
+    /*
+    ** Show last year's budget checkbox
+    */
+    this.showReference = new JCheckBox("Show last year's budget");
+    this.showReference.setSelected(this.settings.getShowReference());
+    this.showReference.setToolTipText("Select to show the budget of the year before in each month");
+    topCtrPanel.add(this.showReference,GridC.getc(4, 1).insets(0, 15, 10, 0));
+    this.showReference.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) 
+        {
+        // The values of the year before are loaded when they are first shown
+        if (BudgetEditorWindow.this.tableModel != null)
+          BudgetEditorWindow.this.tableModel.setShowReference(BudgetEditorWindow.this.showReference.isSelected());
+        }
+      });
+
     /*
     ** Show use category currency checkbox
     */
@@ -290,22 +362,37 @@ public class BudgetEditorWindow extends JFrame
       @Override
       public void actionPerformed(final ActionEvent e) 
         {
+        // The checkbox changed so show the values in the selected currency. Edited 
+        // values are kept in the category currency so they don't need to be saved first.
         if (BudgetEditorWindow.this.tableModel != null)
-          {
-          // Ask to save data if anything has changed
-          if (BudgetEditorWindow.this.checkValuesEdited(false))
-            {
-            // If true was returned the user cancelled so restore the checkbox and return
-            BudgetEditorWindow.this.useCategoryCurrency.setSelected(!BudgetEditorWindow.this.useCategoryCurrency.isSelected());
-            return;
-            }
-
-          // The checkbox changed so update the table
-          BudgetEditorWindow.this.tableModel.Update(BudgetEditorWindow.this.budgetList.getBudget((String)BudgetEditorWindow.this.budgetSelector.getSelectedItem()), (String)BudgetEditorWindow.this.yearSelector.getSelectedItem());
-          }
+          BudgetEditorWindow.this.tableModel.setUseCategoryCurrency(BudgetEditorWindow.this.useCategoryCurrency.isSelected());
         }
       });
 
+    /*
+    ** Show compact storage checkbox
+    */
+    this.compactStorage = new JCheckBox("Combine equal months when saving");
+    this.compactStorage.setSelected(this.settings.getCompactStorage());
+    this.compactStorage.setToolTipText("Select to save consecutive months with the same budget as a single budget item");
+    topCtrPanel.add(this.compactStorage,GridC.getc(5, 0).insets(10, 15, 10, 0));
+
+    /*
+    ** Show remove unused items checkbox
+    */
+    this.purgeOnSave = new JCheckBox("Remove unused items when saving");
+    this.purgeOnSave.setSelected(this.settings.getPurgeOnSave());
+    this.purgeOnSave.setToolTipText("Select to remove budget items with a budget of 0 or for deleted or inactive categories when saving");
+    topCtrPanel.add(this.purgeOnSave,GridC.getc(6, 0).insets(10, 15, 10, 0));
+
+    /*
+    ** Show keep loaded checkbox
+    */
+    this.keepLoaded = new JCheckBox("Keep budget loaded after closing");
+    this.keepLoaded.setSelected(this.settings.getKeepLoaded());
+    this.keepLoaded.setToolTipText("Select to keep the budget in memory after the window is closed so that it opens again quickly");
+    topCtrPanel.add(this.keepLoaded,GridC.getc(7, 0).insets(10, 15, 10, 0));
+
     /*
     ** Top right panel - Initialize Button
     */
@@ -327,6 +414,32 @@ public class BudgetEditorWindow extends JFrame
       }
     });
 
+    // Add a button to remove unused items from the selected budget
+    final JButton compactButton = new JButton("Compact Budget");
+    compactButton.setToolTipText("Remove budget items with a budget of 0 or for deleted or inactive categories");
+    this.topRtPanel.add(compactButton, GridC.getc(1, 0).insets(10, 0, 10, 15));   
+
+    // Create an action listener to dispatch the action when this button is clicked
+    compactButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        BudgetEditorWindow.this.compactBudget();
+      }
+    });
+
+    // Add a button to compare two budgets or two years of a budget
+    final JButton compareButton = new JButton("Compare Budgets");
+    compareButton.setToolTipText("Show the differences between two budgets or two years of a budget");
+    this.topRtPanel.add(compareButton, GridC.getc(2, 0).insets(10, 0, 10, 15));   
+
+    // Create an action listener to dispatch the action when this button is clicked
+    compareButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        BudgetEditorWindow.this.compareBudgets();
+      }
+    });
+
     /*
     ** Top left panel - Help Item
     */
@@ -369,7 +482,25 @@ public class BudgetEditorWindow extends JFrame
     this.add( middlePanel, BorderLayout.CENTER ); 
 
     // Create a table to use to edit the budget values
-    this.table = new Table(this, this.context, this.tableModel = new TableModel(this, this.context, this.budgetList.getBudget((String)this.budgetSelector.getSelectedItem()), (String)this.yearSelector.getSelectedItem() ), colors);
+    // Reuse the budget data kept from the last time the window was open
+    final Budget selectedBudget = this.budgetList.getBudget((String)this.budgetSelector.getSelectedItem());
+    final String selectedYear = (String)this.yearSelector.getSelectedItem();
+    TableModel model = this.extension.takeCachedModel();
+    if ((model != null) && (model.isLoaded()))
+      {
+      model.attach(this);
+
+      // Switch to the selected budget and year if another was shown last time
+      if (!model.isLoaded(selectedBudget, Integer.parseInt(selectedYear)))
+        model.Update(selectedBudget, selectedYear);
+      }
+    else
+      {
+      if (model != null)
+        model.close();
+      model = new TableModel(this, this.context, selectedBudget, selectedYear);
+      }
+    this.table = new Table(this, this.context, this.tableModel = model, colors);
 
     // Do not allow selection of an entire row
     this.table.setRowSelectionAllowed(false);
@@ -377,19 +508,14 @@ public class BudgetEditorWindow extends JFrame
     // Do not allow columns to be reordered by dragging them
     this.table.getTableHeader().setReorderingAllowed(false);
 
-
-    // Set the minimum width of the category column
-    final TableColumn colSelect = this.table.getColumn("Category");
-		colSelect.setMinWidth(240);
-
-    // Create the scroll pane and add the table to it. 
-    // Note: If this doesn't work on low width screens I might want to allow horizontal scrollbars
-    // and resize the columns same as I did for the report window. Would have to turn off auto 
-    // resizing of the table too. this.table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
-    final JScrollPane scrollPane = new JScrollPane(this.table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+    // Create the scroll pane and add the table to it. The table scrolls sideways when
+    // more than 12 months are shown (see Table.configureColumns).
+    // The table is shown once the data has been loaded.
+    final JLabel loadingLabel = new JLabel("Loading budget...", JLabel.CENTER);
+    this.scrollPane = new JScrollPane(loadingLabel, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
     // Add the scroll pane to this panel.
-    middlePanel.add(scrollPane, BorderLayout.CENTER);
+    middlePanel.add(this.scrollPane, BorderLayout.CENTER);
 
     /*
     * Add the Bottom Panel - Action Buttons
@@ -433,6 +559,33 @@ public class BudgetEditorWindow extends JFrame
         }
       });
 
+      /*
+      ** Search box - Show only the categories matching the text typed
+      */
+      final JPanel searchPanel = new JPanel(new GridBagLayout());
+      bottomPanel.add( searchPanel, BorderLayout.WEST );
+      final JLabel searchLabel = new JLabel("Find:");
+      searchPanel.add(searchLabel,GridC.getc(0,0).insets(15,15,15,5));
+      this.searchField = new JTextField(20);
+      this.searchField.setToolTipText("Type part of a category name to show only the matching categories");
+      searchPanel.add(this.searchField,GridC.getc(1,0).insets(15,0,15,15));
+
+      // Filter the table as each key is typed
+      this.searchField.getDocument().addDocumentListener(new DocumentListener() {
+        @Override
+        public void insertUpdate(final DocumentEvent e) {
+          BudgetEditorWindow.this.tableModel.setFilter(BudgetEditorWindow.this.searchField.getText());
+        }
+        @Override
+        public void removeUpdate(final DocumentEvent e) {
+          BudgetEditorWindow.this.tableModel.setFilter(BudgetEditorWindow.this.searchField.getText());
+        }
+        @Override
+        public void changedUpdate(final DocumentEvent e) {
+          // Attribute changes don't change the text
+        }
+      });
+
       /*
       ** Create a panel in the lower right corner of the window
       */
@@ -507,14 +660,30 @@ public class BudgetEditorWindow extends JFrame
    * @return String - The key for the budget name or null if the name wasn't found.
    */
 	public String getBudgetKey (final String strName) {
-		final Budget objBud = this.mapBudgets.get(strName);
-		if (objBud != null)
-			return objBud.getKey();
-		else
-			return null;
+		return this.budgetList.getBudgetKey(strName);
 	}
 
 	
+  /** 
+   * Get the first month to show in the table.
+   * 
+   * @return int - The first month (1...12).
+   */
+  int getFirstMonth() {
+    return this.firstMonthSelector.getSelectedIndex() + 1;
+  }
+
+
+  /** 
+   * Get the number of months to show in the table.
+   * 
+   * @return int - The number of months (12, 24 or 36).
+   */
+  int getMonthCount() {
+    return Integer.parseInt((String)this.monthCountSelector.getSelectedItem());
+  }
+
+  
   /** 
    * Get the index of the selected budget item.
    * 
@@ -545,6 +714,16 @@ public class BudgetEditorWindow extends JFrame
   }
 
 
+  /** 
+   * Get the cache of actual spending totals.
+   * 
+   * @return ActualsCache - The actual spending totals.
+   */
+  public ActualsCache getActuals() {
+    return this.extension.getActualsCache();
+  }
+
+
   /** 
    * Get the table model for the table.
    * 
@@ -581,7 +760,7 @@ public class BudgetEditorWindow extends JFrame
     if (this.isDataChanged()) 
       {
       final int response = JOptionPane.showConfirmDialog( this,
-      "Budget values have been edited. Would you like to save the changes"+(isLeaving ? " before leaving" : "") + "?",
+      "Budget values have been edited in one or more budgets or years. Would you like to save the changes"+(isLeaving ? " before leaving" : "") + "?",
       "Budget Edited",
       JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
       if (response == 0)  // Yes
@@ -595,17 +774,113 @@ public class BudgetEditorWindow extends JFrame
 
     // Either the data wasn't changed or the user selected No
     this.setDataChanged(false);
+
+    // Values edited and not saved are loaded again if they are shown again
+    this.tableModel.discardEdits();
+
+    // Any edits were saved or discarded so they no longer need to be recovered
+    this.tableModel.clearJournal();
     return false;
     }
 
+  /**
+   * Load the budget data in the background once the window is showing. When
+   * the data is loaded the table replaces the loading message and any edits 
+   * that weren't saved last time are offered for recovery.
+   */
+  void loadData() {
+    final Runnable loaded = new Runnable() {
+      @Override
+      public void run() 
+        {
+        // Show the table in place of the loading message
+        BudgetEditorWindow.this.scrollPane.setViewportView(BudgetEditorWindow.this.table);
+
+        // Log how long it took to show the budget once the table has been painted
+        if (Constants.DEBUG)
+          {
+          SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() 
+              {
+              System.err.println("Monthly Budget Editor: Budget shown in "+((System.nanoTime() - BudgetEditorWindow.this.openTime) / 1000000)+" ms.");
+              }
+            });
+          }
+
+        // Offer to restore any edits that weren't saved last time
+        BudgetEditorWindow.this.recoverEdits();
+        }
+      };
+
+    // Data kept from the last time the window was open only needs the changes made since then
+    if (this.tableModel.isLoaded())
+      {
+      this.tableModel.refresh();
+      loaded.run();
+      }
+    else
+      this.tableModel.loadInBackground(loaded);
+  }
+
+  /**
+   * Offer to restore the budget edits that were not saved when Moneydance last
+   * exited. If the edits were made to another budget or year then that budget
+   * and year are selected before the edits are restored. Edits to a year that
+   * is no longer offered are restored to that year without showing it.
+   */
+  void recoverEdits() {
+    // Were there any edits left in the journal?
+    final List<EditJournal.Edit> edits = this.tableModel.getJournaledEdits();
+    if (edits.isEmpty())
+      return;
+
+    // Find the budget and year that were being edited
+    final EditJournal.Edit last = edits.get(edits.size() - 1);
+    final Budget budget = this.budgetList.getBudgetByKey(last.budgetKey);
+    final String year = Integer.toString(last.year);
+    if (budget == null)
+      {
+      // Tell the user why the edits can't be restored before they're discarded
+      JOptionPane.showMessageDialog( this,
+      "Edits to a budget for "+year+" were not saved before Moneydance closed. They can't be restored because the budget no longer exists, so they will be discarded.",
+      "Restore Budget Edits",
+      JOptionPane.WARNING_MESSAGE);
+      this.tableModel.clearJournal();
+      return;
+      }
+
+    // Ask the user if the edits should be restored
+    final int response = JOptionPane.showConfirmDialog( this,
+    "Edits to the "+budget.getName()+" budget for "+year+" were not saved before Moneydance closed. Would you like to restore them?",
+    "Restore Budget Edits",
+    JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+    if (response != JOptionPane.YES_OPTION)
+      {
+      this.tableModel.clearJournal();
+      return;
+      }
+
+    // Select the budget and year that were being edited, edits to a year that can't be selected are still restored and saved
+    this.budgetSelector.setSelectedItem(budget.getName());
+    for (int i = 0; i < this.yearSelector.getItemCount(); i++)
+      {
+      if (year.equals(this.yearSelector.getItemAt(i)))
+        this.yearSelector.setSelectedIndex(i);
+      }
+
+    // Restore the edits in one batch
+    this.tableModel.applyEdits(edits);
+    }
+
   /**
    * This is the handler for the "Initialize Budget" button. It prompts the 
-   * user to see what should be done then cancels, copies last year's budget
-   * or copies last year's actuals.
+   * user to see what should be done then cancels, copies last year's budget,
+   * copies last year's actuals or initializes several budgets and years at once.
    */
   private void initBudget() {
     // Prompt user to get what is to be done
-    final String[] options = new String[] {"Cancel", "Copy prior year's budget", "Use prior year's actuals"};
+    final String[] options = new String[] {"Cancel", "Copy prior year's budget", "Use prior year's actuals", "Several budgets/years..."};
     final int response = JOptionPane.showOptionDialog( this,
     "WARNING! Any existing budget values for the selected year will be overwritten if you continue.",
     "Initialize Budget",
@@ -614,10 +889,156 @@ public class BudgetEditorWindow extends JFrame
       this.table.copyPriorBudget();
     else if (response == 2) // Use prior year's actuals
       this.table.copyPriorActuals();
+    else if (response == 3) // Initialize several budgets and years
+      this.batchInitBudget();
 
     return;
   }
+
+  /**
+   * Prompt for the budgets, years and source to initialize several budgets
+   * and years at once and then initialize them.
+   */
+  private void batchInitBudget() {
+    // Budgets to initialize
+    final String[] names = this.budgetList.getBudgetNames();
+    final JList<String> budgetChoices = new JList<String>(names);
+    budgetChoices.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    budgetChoices.setSelectedIndex(this.budgetIndex);
+    budgetChoices.setVisibleRowCount(6);
+
+    // Years to initialize
+    final String[] years = new String[this.yearSelector.getItemCount()];
+    for (int i = 0; i < years.length; i++)
+      years[i] = this.yearSelector.getItemAt(i);
+    final JList<String> yearChoices = new JList<String>(years);
+    yearChoices.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    yearChoices.setSelectedIndex(this.yearIndex);
+    yearChoices.setVisibleRowCount(6);
+    yearChoices.ensureIndexIsVisible(this.yearIndex);
+
+    // Where to initialize from
+    final String[] sources = new String[names.length + 2];
+    sources[0] = "Prior year's actuals";
+    sources[1] = "Prior year of the same budget";
+    for (int i = 0; i < names.length; i++)
+      sources[i + 2] = "Prior year of "+names[i];
+    final JComboBox<String> sourceChoice = new JComboBox<String>(sources);
+
+    // Build the prompt
+    final JPanel panel = new JPanel(new GridBagLayout());
+    panel.add(new JLabel("WARNING! Any existing budget values for the selected years will be overwritten if you continue."), GridC.getc(0, 0).insets(0, 0, 10, 0));
+    panel.add(new JLabel("Budgets:"), GridC.getc(0, 1).insets(0, 0, 5, 0));
+    panel.add(new JScrollPane(budgetChoices), GridC.getc(0, 2).insets(0, 0, 10, 0));
+    panel.add(new JLabel("Budget Years:"), GridC.getc(0, 3).insets(0, 0, 5, 0));
+    panel.add(new JScrollPane(yearChoices), GridC.getc(0, 4).insets(0, 0, 10, 0));
+    panel.add(new JLabel("Initialize from:"), GridC.getc(0, 5).insets(0, 0, 5, 0));
+    panel.add(sourceChoice, GridC.getc(0, 6));
+
+    final int response = JOptionPane.showConfirmDialog(this, panel, "Initialize Budgets", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+    if ((response != JOptionPane.OK_OPTION) || (budgetChoices.isSelectionEmpty()) || (yearChoices.isSelectionEmpty()))
+      return;
+
+    // Ask to save data if anything has changed since the table is reloaded afterwards
+    if (this.checkValuesEdited(false))
+      return;
+
+    // Create a job for each budget and year selected
+    final BatchInitializer batch = new BatchInitializer(this.context.getCurrentAccountBook(), this.compactStorage.isSelected());
+    final int source = sourceChoice.getSelectedIndex();
+    for (final String name : budgetChoices.getSelectedValuesList())
+      {
+      final Budget target = this.budgetList.getBudget(name);
+      for (final String year : yearChoices.getSelectedValuesList())
+        {
+        if (source == 0)
+          batch.add(new BatchInitializer.Job(target, Integer.parseInt(year), null));
+        else if (source == 1)
+          batch.add(new BatchInitializer.Job(target, Integer.parseInt(year), target));
+        else
+          batch.add(new BatchInitializer.Job(target, Integer.parseInt(year), this.budgetList.getBudget(names[source - 2])));
+        }
+      }
+    batch.run();
+
+    // Reload the table in case the budget and year being edited changed
+    this.tableModel.LoadData();
+
+    JOptionPane.showMessageDialog(this,
+    batch.getReport(),
+    "Initialize Budgets",
+    JOptionPane.PLAIN_MESSAGE);
+  }
   
+  /**
+   * This is the handler for the "Compact Budget" button. It finds the unused
+   * items in the selected budget, asks before removing them and then reports
+   * what was removed.
+   */
+  private void compactBudget() {
+    final BudgetCompactor compactor = this.tableModel.scanBudget();
+    if (compactor.getFound() > 0)
+      {
+      // The items can't be put back so ask first
+      final int response = JOptionPane.showConfirmDialog( this,
+      compactor.getFoundReport()+"\n\nRemoved items can't be restored. Would you like to remove them?",
+      "Compact Budget",
+      JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+      if (response != JOptionPane.YES_OPTION)
+        return;
+      compactor.remove();
+      }
+
+    JOptionPane.showMessageDialog(this,
+    compactor.getReport(),
+    "Compact Budget",
+    JOptionPane.PLAIN_MESSAGE);
+  }
+
+  /**
+   * This is the handler for the "Compare Budgets" button. It prompts for the
+   * budgets and years to compare and then shows the differences.
+   */
+  private void compareBudgets() {
+    // Nothing can be compared until the categories are loaded
+    if (!this.tableModel.isLoaded())
+      return;
+
+    final String[] names = this.budgetList.getBudgetNames();
+    final String[] years = new String[this.yearSelector.getItemCount()];
+    for (int i = 0; i < years.length; i++)
+      years[i] = this.yearSelector.getItemAt(i);
+
+    // Compare the selected budget with its prior year by default
+    final JComboBox<String> firstBudget = new JComboBox<String>(names);
+    firstBudget.setSelectedIndex(this.budgetIndex);
+    final JComboBox<String> firstYear = new JComboBox<String>(years);
+    firstYear.setSelectedIndex(Math.max(this.yearIndex - 1, 0));
+    final JComboBox<String> secondBudget = new JComboBox<String>(names);
+    secondBudget.setSelectedIndex(this.budgetIndex);
+    final JComboBox<String> secondYear = new JComboBox<String>(years);
+    secondYear.setSelectedIndex(this.yearIndex);
+
+    // Build the prompt
+    final JPanel panel = new JPanel(new GridBagLayout());
+    panel.add(new JLabel("Compare:"), GridC.getc(0, 0).insets(0, 0, 10, 15));
+    panel.add(secondBudget, GridC.getc(1, 0).insets(0, 0, 10, 15));
+    panel.add(secondYear, GridC.getc(2, 0).insets(0, 0, 10, 0));
+    panel.add(new JLabel("With:"), GridC.getc(0, 1).insets(0, 0, 0, 15));
+    panel.add(firstBudget, GridC.getc(1, 1).insets(0, 0, 0, 15));
+    panel.add(firstYear, GridC.getc(2, 1));
+
+    final int response = JOptionPane.showConfirmDialog(this, panel, "Compare Budgets", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+    if (response != JOptionPane.OK_OPTION)
+      return;
+
+    // Show the differences, values that were edited are compared as they are shown
+    final BudgetComparison comparison = this.tableModel.compare(
+      this.budgetList.getBudget((String)firstBudget.getSelectedItem()), Integer.parseInt((String)firstYear.getSelectedItem()),
+      this.budgetList.getBudget((String)secondBudget.getSelectedItem()), Integer.parseInt((String)secondYear.getSelectedItem()));
+    new ComparisonWindow(this, this.tableModel, comparison).setVisible(true);
+  }
+
   /** 
    * Action method called when the Cancel button is pressed. It first checks
    * to see if any data was changed and then asks the user what to do. If the 
@@ -649,11 +1070,41 @@ public class BudgetEditorWindow extends JFrame
     // Save the current settings for next time
     this.settings.setBudgetName(this.budgetSelector.getSelectedItem().toString());
     this.settings.setUseCategoryCurrency(this.useCategoryCurrency.isSelected());
+    this.settings.setCompactStorage(this.compactStorage.isSelected());
+    this.settings.setPurgeOnSave(this.purgeOnSave.isSelected());
+    this.settings.setKeepLoaded(this.keepLoaded.isSelected());
+    this.settings.setFirstMonth(this.getFirstMonth());
+    this.settings.setMonthCount(this.getMonthCount());
+    this.settings.setShowReference(this.showReference.isSelected());
     this.settings.saveSettings();
 
-    if (this.isDataChanged()) 
+    // Without edits only rewrite the budget if the user asks for it
+    boolean saveData = this.isDataChanged();
+    if ((!saveData) && ((this.compactStorage.isSelected()) || (this.purgeOnSave.isSelected())))
+      {
+      final int response = JOptionPane.showConfirmDialog( this,
+      "No budget values were changed. Would you like to rewrite the budget anyway to compact its storage or remove unused items?",
+      "Save Budget",
+      JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+      if (response != JOptionPane.YES_OPTION)
+        return;
+      saveData = true;
+      }
+
+    if (saveData) 
+      {
       // Save the changes then exit
-      this.tableModel.saveData();
+      final BudgetCompactor compactor = this.tableModel.saveData();
+
+      // Report any unused budget items that were removed
+      if ((compactor != null) && (compactor.getReclaimed() != 0))
+        {
+        JOptionPane.showMessageDialog(this,
+        compactor.getReport(),
+        "Save Budget",
+        JOptionPane.PLAIN_MESSAGE);
+        }
+      }
     else
       {
       JOptionPane.showMessageDialog(this,
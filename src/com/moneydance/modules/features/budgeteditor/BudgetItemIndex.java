@@ -0,0 +1,224 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.BudgetItem;
+
+/**
+* Index of the budget items in a budget by category.
+* The index is built with a single pass over the budget item list. Each
+* monthly budget item is recorded as a span of months so that items covering
+* more than one month (see compact storage) are read back into every month
+* they cover.
+*
+* @author  Jerry Jones
+*/
+public class BudgetItemIndex {
+    // The key of the budget indexed
+    private final String budgetKey;
+
+    // Budget item spans by category UUID
+    private final Map<String, List<Span>> spans = new HashMap<String, List<Span>>();
+
+    /**
+    * A monthly budget item and the range of months it covers. Months are
+    * stored as a month number (year * 12 + month - 1) so that spans that
+    * cross a year boundary can be compared easily.
+    */
+    static final class Span {
+        // The budget item
+        final BudgetItem item;
+
+        // The first month covered by the item
+        final int first;
+
+        // The last month covered by the item
+        final int last;
+
+        /**
+         * Constructor for a budget item span.
+         * 
+         * @param item - The budget item.
+         */
+        Span(final BudgetItem item) {
+            this.item = item;
+            this.first = BudgetItemIndex.monthNumber(item.getIntervalStartDate());
+
+            // An item without a valid end date repeats forever
+            final int end = item.getIntervalEndDate();
+            this.last = (end < item.getIntervalStartDate()) ? Integer.MAX_VALUE : BudgetItemIndex.monthNumber(end);
+        }
+
+        /**
+         * @return int - The number of months covered by this item.
+         */
+        int length() {
+            return (this.last == Integer.MAX_VALUE) ? Integer.MAX_VALUE : this.last - this.first + 1;
+        }
+
+        /**
+         * @param year - The year to check.
+         * @return boolean - true if this item covers any month of the year.
+         */
+        boolean intersects(final int year) {
+            return (this.first <= (year * 12) + 11) && (this.last >= year * 12);
+        }
+    }
+
+    /**
+     * Constructor to build the index for a budget.
+     * 
+     * @param budget - The budget to index.
+     */
+    public BudgetItemIndex(final Budget budget) {
+        this.budgetKey = budget.getKey();
+
+        // Single pass through all of the items in the budget
+        for (final BudgetItem item : budget.getItemList().getAllItems())
+            this.add(item);
+    }
+
+
+    /** 
+     * @param budget - The budget to check.
+     * @return boolean - true if this is the index of the budget.
+     */
+    boolean isFor(final Budget budget) {
+        return this.budgetKey.equals(budget.getKey());
+    }
+
+
+    /** 
+     * Add a budget item to the index. Only monthly items that belong to a 
+     * category are indexed.
+     * 
+     * @param item - The budget item to add.
+     */
+    void add(final BudgetItem item) {
+        final Account acct = item.getTransferAccount();
+        if ((acct != null) && (item.getInterval() == BudgetItem.INTERVAL_MONTHLY))
+            this.spans.computeIfAbsent(acct.getUUID(), k -> new ArrayList<Span>()).add(new Span(item));
+    }
+
+
+    /** 
+     * Remove a budget item from the index.
+     * 
+     * @param uuid - The UUID of the category the item belongs to.
+     * @param item - The budget item to remove.
+     */
+    void remove(final String uuid, final BudgetItem item) {
+        final List<Span> list = this.spans.get(uuid);
+        if (list != null)
+            list.removeIf(s -> s.item == item);
+    }
+
+
+    /** 
+     * Get the budget values for a category and year. When more than one item
+     * covers a month the item covering the fewest months is used.
+     * 
+     * @param uuid - The UUID of the category.
+     * @param year - The budget year.
+     * @param values - Array to receive the values, [1...12] are the monthly
+     * values. Months without a budget item are left untouched.
+     * @return boolean - true if any budget item was found for the year.
+     */
+    public boolean getValues(final String uuid, final int year, final long[] values) {
+        final List<Span> list = this.spans.get(uuid);
+        if (list == null)
+            return false;
+
+        boolean found = false;
+        final int[] lengths = new int[13];
+        for (final Span span : list)
+            {
+            if (!span.intersects(year))
+                continue;
+
+            // Fill in each month of the year this item covers
+            final int first = Math.max(span.first, year * 12);
+            final int last = Math.min(span.last, (year * 12) + 11);
+            for (int m = first; m <= last; m++)
+                {
+                final int month = m - (year * 12) + 1;
+                if ((lengths[month] == 0) || (span.length() <= lengths[month]))
+                    {
+                    values[month] = span.item.getAmount();
+                    lengths[month] = span.length();
+                    }
+                }
+            found = true;
+            }
+
+        return found;
+    }
+
+
+    /** 
+     * Get the spans for a category that cover any month of the year.
+     * 
+     * @param uuid - The UUID of the category.
+     * @param year - The budget year.
+     * @return List<Span> - The spans found, the list is empty if there are none.
+     */
+    List<Span> getSpans(final String uuid, final int year) {
+        final List<Span> found = new ArrayList<Span>();
+        final List<Span> list = this.spans.get(uuid);
+        if (list != null)
+            {
+            for (final Span span : list)
+                {
+                if (span.intersects(year))
+                    found.add(span);
+                }
+            }
+        return found;
+    }
+
+
+    /** 
+     * Convert a date to a month number.
+     * 
+     * @param date - The date (YYYYMMDD).
+     * @return int - The month number (year * 12 + month - 1).
+     */
+    static int monthNumber(final int date) {
+        return ((date / 10000) * 12) + ((date / 100) % 100) - 1;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.BudgetItem;
+import com.infinitekind.util.DateUtil;
+
+/**
+* Class to write budget values back to a Moneydance budget.
+* Values are normally written as one budget item per month. In compact mode
+* consecutive months with the same value are written as a single budget item 
+* covering all of those months.
+*
+* <p><b>Note:</b> Changed items are not synced to Moneydance until flush is
+* called so that each item is only synced once.
+*
+* @author  Jerry Jones
+*/
+public class BudgetItemWriter {
+    // The budget to write to
+    private final Budget budget;
+
+    // Index of the existing items in the budget
+    private final BudgetItemIndex index;
+
+    // When true, runs of equal months are stored as a single budget item
+    private final boolean compact;
+
+    // Items that have changed and need to be synced
+    private final Set<BudgetItem> pending = new LinkedHashSet<BudgetItem>();
+
+    // The number of items synced
+    private int itemsWritten = 0;
+
+    /**
+     * Constructor for the budget item writer.
+     * 
+     * @param budget - The budget to write to.
+     * @param index - Index of the existing budget items. The index is kept up to
+     * date as items are written.
+     * @param compact - true to store runs of equal months as a single item.
+     */
+    public BudgetItemWriter(final Budget budget, final BudgetItemIndex index, final boolean compact) {
+        this.budget = budget;
+        this.index = index;
+        this.compact = compact;
+    }
+
+
+    /** 
+     * Write the budget values for a category and year.
+     * 
+     * @param acct - The category (account) to write.
+     * @param year - The budget year.
+     * @param values - The budget values, [1...12] are the monthly values.
+     * @param changed - Flags for the months that changed, [0...11]. In compact
+     * mode the whole year is checked so these flags are not used.
+     */
+    public void write(final Account acct, final int year, final long[] values, final boolean[] changed) {
+        final List<BudgetItemIndex.Span> spans = this.index.getSpans(acct.getUUID(), year);
+
+        // If we aren't compacting and all existing items cover a single month
+        // then simply update the items for the months that changed
+        if (!this.compact)
+            {
+            boolean singleMonths = true;
+            for (final BudgetItemIndex.Span span : spans)
+                {
+                if (span.length() != 1)
+                    {
+                    singleMonths = false;
+                    break;
+                    }
+                }
+
+            if (singleMonths)
+                {
+                for (int month = 1; month <= 12; month++)
+                    {
+                    if (changed[month - 1])
+                        this.writeMonth(acct, year, month, values[month], spans);
+                    }
+                return;
+                }
+            }
+
+        // In compact mode there's nothing to do if the items are already compact
+        else if (BudgetItemWriter.isCompact(year, values, spans))
+            return;
+
+        // Otherwise, the whole year is rewritten
+        this.rewriteYear(acct, year, values, spans);
+    }
+
+
+    /** 
+     * Check if the existing items for a year are exactly the compact runs of 
+     * the values for that year.
+     * 
+     * @param year - The budget year.
+     * @param values - The budget values, [1...12] are the monthly values.
+     * @param spans - The existing items for this category and year.
+     * @return boolean - true if the items are already stored compactly.
+     */
+    private static boolean isCompact(final int year, final long[] values, final List<BudgetItemIndex.Span> spans) {
+        int runs = 0;
+        int month = 1;
+        while (month <= 12)
+            {
+            int end = month;
+            while ((end < 12) && (values[end + 1] == values[month]))
+                end++;
+
+            // Each run with a value must have exactly one matching item
+            if (values[month] != 0)
+                {
+                boolean found = false;
+                for (final BudgetItemIndex.Span span : spans)
+                    {
+                    if ((span.first == (year * 12) + month - 1) && (span.last == (year * 12) + end - 1) && (span.item.getAmount() == values[month]))
+                        {
+                        found = true;
+                        break;
+                        }
+                    }
+                if (!found)
+                    return false;
+                runs++;
+                }
+            month = end + 1;
+            }
+
+        // There must not be any other items
+        return (runs == spans.size());
+    }
+
+
+    /** 
+     * Update or create the single month budget item for a month.
+     * 
+     * @param acct - The category (account) to write.
+     * @param year - The budget year.
+     * @param month - The month to write (1...12).
+     * @param value - The new budget value.
+     * @param spans - The existing single month items for this category and year.
+     */
+    private void writeMonth(final Account acct, final int year, final int month, final long value, final List<BudgetItemIndex.Span> spans) {
+        final int monthNumber = (year * 12) + month - 1;
+        for (final BudgetItemIndex.Span span : spans)
+            {
+            if (span.first == monthNumber)
+                {
+                if (value != 0)
+                    {
+                    // Save the new budget at the old BudgetItem
+                    span.item.setAmount(value);
+                    this.pending.add(span.item);
+                    }
+                else
+                    {
+                    // A budget of 0 doesn't need an item
+                    this.index.remove(acct.getUUID(), span.item);
+                    this.delete(span.item);
+                    }
+                return;
+                }
+            }
+
+        // If value to write is 0 and there is no prior budget for this period then we don't need to create one
+        if (value != 0)
+            this.createItem(acct, DateUtil.getDate(year, month, 1), DateUtil.lastDayInMonth(DateUtil.getDate(year, month, 1)), value);
+    }
+
+
+    /** 
+     * Rewrite all of the budget items for a category and year. Parts of 
+     * existing items that fall outside of the year are kept.
+     * 
+     * @param acct - The category (account) to write.
+     * @param year - The budget year.
+     * @param values - The budget values, [1...12] are the monthly values.
+     * @param spans - The existing items for this category and year.
+     */
+    private void rewriteYear(final Account acct, final int year, final long[] values, final List<BudgetItemIndex.Span> spans) {
+        // Remove the existing items from this year
+        for (final BudgetItemIndex.Span span : spans)
+            {
+            final BudgetItem item = span.item;
+            final boolean before = (span.first < year * 12);
+            final boolean after = (span.last > (year * 12) + 11);
+            this.index.remove(acct.getUUID(), item);
+
+            if (before && after)
+                {
+                // Split the item around this year
+                this.createItem(acct, DateUtil.getDate(year + 1, 1, 1), item.getIntervalEndDate(), item.getAmount());
+                item.setIntervalEndDate(DateUtil.getDate(year - 1, 12, 31));
+                this.pending.add(item);
+                this.index.add(item);
+                }
+            else if (before)
+                {
+                // Keep the part of the item before this year
+                item.setIntervalEndDate(DateUtil.getDate(year - 1, 12, 31));
+                this.pending.add(item);
+                this.index.add(item);
+                }
+            else if (after)
+                {
+                // Keep the part of the item after this year
+                item.setIntervalStartDate(DateUtil.getDate(year + 1, 1, 1));
+                this.pending.add(item);
+                this.index.add(item);
+                }
+            else
+                this.delete(item);
+            }
+
+        // Now write the year as runs of months with the same value
+        int month = 1;
+        while (month <= 12)
+            {
+            int end = month;
+            if (this.compact)
+                {
+                while ((end < 12) && (values[end + 1] == values[month]))
+                    end++;
+                }
+
+            // There's no need for an item when the budget is 0
+            if (values[month] != 0)
+                {
+                this.createItem(acct, DateUtil.getDate(year, month, 1), DateUtil.lastDayInMonth(DateUtil.getDate(year, end, 1)), values[month]);
+                }
+            month = end + 1;
+            }
+    }
+
+
+    /** 
+     * Create a new monthly budget item.
+     * 
+     * @param acct - The category (account) for the item.
+     * @param startDate - The first date covered by the item.
+     * @param endDate - The last date covered by the item.
+     * @param value - The monthly budget value.
+     */
+    private void createItem(final Account acct, final int startDate, final int endDate, final long value) {
+        final BudgetItem newItem = this.budget.createItem();
+        newItem.setTransferAccount(acct);
+        newItem.setIntervalStartDate(startDate);
+        newItem.setIntervalEndDate(endDate);
+        newItem.setAmount(value);
+        newItem.setInterval(BudgetItem.INTERVAL_MONTHLY);
+        this.pending.add(newItem);
+
+        // Keep the index up to date
+        this.index.add(newItem);
+    }
+
+
+    /** 
+     * Delete a budget item.
+     * 
+     * @param item - The item to delete.
+     */
+    private void delete(final BudgetItem item) {
+        // There's no need to sync an item that is being deleted
+        this.pending.remove(item);
+        item.deleteItem();
+    }
+
+
+    /** 
+     * Sync all of the changed items to Moneydance.
+     */
+    public void flush() {
+        for (final BudgetItem item : this.pending)
+            item.syncItem();
+        this.itemsWritten += this.pending.size();
+        this.pending.clear();
+    }
+
+
+    /** 
+     * @return int - The number of budget items synced so far.
+     */
+    public int getItemsWritten() {
+        return this.itemsWritten;
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.Arrays;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.Account.AccountType;
+import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.CurrencyUtil;
+
+/**
+* The budget values for one budget and year.
+* The values are stored by row of the budget categories list so that the
+* values of several budgets and years can share one list of categories.
+*
+* @author  Jerry Jones
+*/
+final class BudgetValues {
+    // Values per row - [0] is not used, [1...12] each monthly budget, [13] the total
+    static final int COLUMNS = 14;
+
+    // The budget these values are for
+    private final Budget budget;
+
+    // The budget year these values are for
+    private final int year;
+
+    // The categories the values are for
+    private final BudgetCategoriesList categories;
+
+    // Index of the budget items these values were loaded from
+    private final BudgetItemIndex index;
+
+    // Budget values by row and column
+    private final long[] values;
+
+    // Flags to indicate whenever a budget value has been changed and needs to be stored, by row and month
+    private final boolean[] changed;
+
+    // The number of months changed
+    private int changedCount = 0;
+
+    // The version of the budget the values were loaded from
+    private int version;
+
+    /**
+     * Constructor for the values of a budget and year. All values start at 0.
+     * 
+     * @param categories - The categories the values are for.
+     * @param budget - The budget the values are for.
+     * @param year - The budget year the values are for.
+     * @param index - Index of the budget items the values are loaded from.
+     * @param version - The version of the budget the values are loaded from.
+     */
+    BudgetValues(final BudgetCategoriesList categories, final Budget budget, final int year, final BudgetItemIndex index, final int version) {
+        this.categories = categories;
+        this.budget = budget;
+        this.year = year;
+        this.index = index;
+        this.version = version;
+        this.values = new long[categories.getCategoryCount() * BudgetValues.COLUMNS];
+        this.changed = new boolean[categories.getCategoryCount() * BudgetValues.COLUMNS];
+    }
+
+
+    /** 
+     * Load the values of a budget and year for all of the categories. 
+     * 
+     * @param categories - The categories to load the values for.
+     * @param budget - The budget to load.
+     * @param year - The budget year to load.
+     * @param version - The version of the budget being loaded.
+     * @return BudgetValues - The values loaded.
+     */
+    static BudgetValues load(final BudgetCategoriesList categories, final Budget budget, final int year, final int version) {
+        return BudgetValues.load(categories, budget, year, new BudgetItemIndex(budget), version);
+    }
+
+
+    /** 
+     * Load the values of a budget and year for all of the categories from an
+     * index of the budget items that was already built, so that the years of
+     * a budget can share one index.
+     * 
+     * @param categories - The categories to load the values for.
+     * @param budget - The budget to load.
+     * @param year - The budget year to load.
+     * @param index - Index of the budget items in the budget.
+     * @param version - The version of the budget the index was built from.
+     * @return BudgetValues - The values loaded.
+     */
+    static BudgetValues load(final BudgetCategoriesList categories, final Budget budget, final int year, final BudgetItemIndex index, final int version) {
+        final BudgetValues budgetValues = new BudgetValues(categories, budget, year, index, version);
+
+        // Get the budget values of each category that isn't a roll-up category
+        final long[] values = new long[13];
+        int row = 0;
+        for (final BudgetCategoryItem item : categories.getCategoryItems())
+            {
+            // Months without a budget item are 0
+            Arrays.fill(values, 0);
+            if ((!item.hasChildren()) && (item.getAccount() != null) && (budgetValues.index.getValues(item.getAccount().getUUID(), year, values)))
+                {
+                for (int month = 1; month <= 12; month++)
+                    budgetValues.set(null, row, month, values[month], item.getCategoryType());
+                }
+            row++;
+            }
+        return budgetValues;
+    }
+
+
+    /** 
+     * Bring the values that weren't edited up to date with a newer version of
+     * the budget. Values that were edited are kept.
+     * 
+     * @param index - Index of the budget items in the newer version of the budget.
+     * @param version - The version of the budget the index was built from.
+     */
+    void refreshUnchanged(final BudgetItemIndex index, final int version) {
+        final long[] values = new long[13];
+        int row = 0;
+        for (final BudgetCategoryItem item : this.categories.getCategoryItems())
+            {
+            if ((!item.hasChildren()) && (item.getAccount() != null))
+                {
+                // Months without a budget item are 0
+                Arrays.fill(values, 0);
+                index.getValues(item.getAccount().getUUID(), this.year, values);
+                for (int month = 1; month <= 12; month++)
+                    {
+                    if ((!this.isChanged(row, month)) && (this.get(row, month) != values[month]))
+                        this.set(null, row, month, values[month], item.getCategoryType());
+                    }
+                }
+            row++;
+            }
+        this.version = version;
+    }
+
+
+    /** 
+     * @return Budget - The budget these values are for.
+     */
+    Budget getBudget() {
+        return this.budget;
+    }
+
+
+    /** 
+     * @return int - The budget year these values are for.
+     */
+    int getYear() {
+        return this.year;
+    }
+
+
+    /** 
+     * @return BudgetItemIndex - Index of the budget items the values were loaded from.
+     */
+    BudgetItemIndex getIndex() {
+        return this.index;
+    }
+
+
+    /** 
+     * @return int - The version of the budget the values were loaded from.
+     */
+    int getVersion() {
+        return this.version;
+    }
+
+
+    /** 
+     * @param version - The version of the budget the values now match.
+     */
+    void setVersion(final int version) {
+        this.version = version;
+    }
+
+
+    /** 
+     * Get a budget value or total.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12] or 13 for the total.
+     * @return long - The budget value.
+     */
+    long get(final int row, final int month) {
+        return this.values[(row * BudgetValues.COLUMNS) + month];
+    }
+
+
+    /** 
+     * Set the budget value for a month and roll the difference up to the
+     * parent categories.
+     * 
+     * @param model - The table model to notify of changes or null to not notify.
+     * @param row - The row of the category.
+     * @param month - The month to set.
+     * @param value - The new budget value.
+     * @param type - The category type. Account.AccountType.Income (Income)
+     * or Account.AccountType.EXPENSE (Expenses)
+     */
+    void set(final TableModel model, final int row, final int month, final long value, final AccountType type) {
+        final BudgetCategoryItem item = this.categories.getCategoryItemByIndex(row);
+        final int base = row * BudgetValues.COLUMNS;
+
+        // Get previous budgetValue
+        final long previousValue = this.values[base + month];
+
+        // Calculate the difference for updating the parent
+        long difference;
+        if ((item.getParentRow() == 0) && (type == Account.AccountType.EXPENSE))
+            // If the next row is the overall totals and this is an expense change 
+            // then we need to reverse the calculation
+            difference = previousValue - value;
+        else
+            // Calculate the difference between the old value and the new one
+            difference = value - previousValue;
+
+        // Save the new value and keep track of the total for this budget category
+        this.values[base + month] = value;
+        this.values[base + 13] += value - previousValue;
+
+        // Update parent
+        final int parentRow = item.getParentRow();
+        if (parentRow != -1)
+            {
+            final BudgetCategoryItem parentItem = this.categories.getCategoryItemByIndex(parentRow);
+            if (parentItem != null)
+                {
+                // Convert the difference to the parent currency if needed
+                if (item.getCurrencyType() != parentItem.getCurrencyType())
+                    difference = CurrencyUtil.convertValue(difference, item.getCurrencyType(), parentItem.getCurrencyType());
+
+                // Update the parent
+                this.set(model, parentRow, month, this.get(parentRow, month) + difference, type);
+
+                // Notify all listeners that the value of the cell at [row, column] has been updated.
+                if (model != null)
+                    // Tell the model the month value and the row total changed
+                    model.fireValueUpdated(this, parentRow, month);
+                }
+            else
+                System.err.println("ERROR: Parent item is null in BudgetValues.set.");
+            }
+    }
+
+
+    /** 
+     * Set the budget value for a month without updating the parent categories.
+     * Used for batches of changes that are rolled up once with rollUp when
+     * the batch is finished.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month to set.
+     * @param value - The new budget value.
+     */
+    void setWithoutRollUp(final int row, final int month, final long value) {
+        final int base = row * BudgetValues.COLUMNS;
+        this.values[base + 13] += value - this.values[base + month];
+        this.values[base + month] = value;
+    }
+
+
+    /** 
+     * Work out the values of all of the roll-up categories from the values of
+     * the categories under them in one pass. Children always follow their
+     * parent so working from the last row to the first adds each category to
+     * its parent after all of its own children were added to it.
+     */
+    void rollUp() {
+        final int count = this.categories.getCategoryCount();
+
+        // Start the roll-up categories from 0
+        for (int row = 0; row < count; row++)
+            {
+            if (this.categories.getCategoryItemByIndex(row).hasChildren())
+                Arrays.fill(this.values, row * BudgetValues.COLUMNS, (row + 1) * BudgetValues.COLUMNS, 0);
+            }
+
+        // Add each category to its parent
+        for (int row = count - 1; row >= 0; row--)
+            {
+            final BudgetCategoryItem item = this.categories.getCategoryItemByIndex(row);
+            final int parentRow = item.getParentRow();
+            if (parentRow == -1)
+                continue;
+            final BudgetCategoryItem parentItem = this.categories.getCategoryItemByIndex(parentRow);
+
+            // Expenses are subtracted from the overall totals
+            final boolean subtract = (parentRow == 0) && (item.getCategoryType() == Account.AccountType.EXPENSE);
+            final int base = row * BudgetValues.COLUMNS;
+            final int parentBase = parentRow * BudgetValues.COLUMNS;
+            for (int month = 1; month <= 13; month++)
+                {
+                // Convert the value to the parent currency if needed
+                long value = this.values[base + month];
+                if (item.getCurrencyType() != parentItem.getCurrencyType())
+                    value = CurrencyUtil.convertValue(value, item.getCurrencyType(), parentItem.getCurrencyType());
+                this.values[parentBase + month] += subtract ? -value : value;
+                }
+            }
+    }
+
+
+    /** 
+     * @return long[] - A copy of the values by row and column that isn't
+     * changed by later edits.
+     */
+    long[] copyValues() {
+        return this.values.clone();
+    }
+
+
+    /** 
+     * Work out the difference between two sets of values for the same
+     * categories in one pass over the values. The loop over the months of a
+     * row has no branches so that it can be vectorized.
+     * 
+     * @param first - The values to compare with by row and column.
+     * @param second - The values to compare by row and column.
+     * @param deltas - Array to receive second - first by row and column,
+     * the same size as the values.
+     * @param differs - Array to receive true for each row with a month that differs.
+     * @return int - The number of rows that differ.
+     */
+    static int difference(final long[] first, final long[] second, final long[] deltas, final boolean[] differs) {
+        int count = 0;
+        for (int row = 0, base = 0; row < differs.length; row++, base += BudgetValues.COLUMNS)
+            {
+            long any = 0;
+            for (int i = base + 1; i < base + BudgetValues.COLUMNS; i++)
+                {
+                final long delta = second[i] - first[i];
+                deltas[i] = delta;
+                any |= delta;
+                }
+            differs[row] = (any != 0);
+            if (any != 0)
+                count++;
+            }
+        return count;
+    }
+
+
+    /** 
+     * Get the data changed flag for a month.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12].
+     * @return boolean - true if the value has been changed.
+     */
+    boolean isChanged(final int row, final int month) {
+        return this.changed[(row * BudgetValues.COLUMNS) + month];
+    }
+
+
+    /** 
+     * Set the data changed flag for a month.
+     * 
+     * @param row - The row of the category.
+     * @param month - The month [1...12].
+     * @param value - true if the value has been changed, false otherwise.
+     */
+    void setChanged(final int row, final int month, final boolean value) {
+        final int i = (row * BudgetValues.COLUMNS) + month;
+        if (this.changed[i] != value)
+            {
+            this.changed[i] = value;
+            this.changedCount += value ? 1 : -1;
+            }
+    }
+
+
+    /** 
+     * @return boolean - true if any value has been changed and not saved.
+     */
+    boolean isDirty() {
+        return this.changedCount != 0;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.Arrays;
+
+/**
+* A prefix index of the words in the category names used to find the rows
+* that match the text typed in the search box. Every prefix of every word is
+* indexed when the categories are loaded so finding the rows for a word takes
+* the same time however many categories there are.
+*
+* @author  Jerry Jones
+*/
+final class CategorySearchIndex {
+    // The first node of the prefix tree, for the empty prefix
+    private final Node root = new Node();
+
+    // The parent row of each row or -1 for the top row
+    private final int[] parents;
+
+    // The search each row was last marked in
+    private final int[] marks;
+
+    // Incremented for each search so the marks never have to be cleared
+    private int search = 0;
+
+    /**
+    * A node of the prefix tree. The node holds the rows of the categories
+    * with a word that starts with the prefix leading to the node.
+    */
+    private static final class Node {
+        // The next characters of the prefix, sorted
+        private char[] keys = new char[0];
+
+        // The node for each next character
+        private Node[] children = new Node[0];
+
+        // The rows with a word starting with the prefix, sorted
+        private int[] rows = new int[1];
+
+        // The number of rows
+        private int rowCount = 0;
+
+        /** 
+         * Get the node for the next character of the prefix.
+         * 
+         * @param c - The next character.
+         * @return Node - The node or null if no word starts with the prefix.
+         */
+        Node get(final char c) {
+            final int i = Arrays.binarySearch(this.keys, c);
+            return (i >= 0) ? this.children[i] : null;
+        }
+
+        /** 
+         * Get the node for the next character of the prefix, adding it if
+         * needed.
+         * 
+         * @param c - The next character.
+         * @return Node - The node.
+         */
+        Node add(final char c) {
+            int i = Arrays.binarySearch(this.keys, c);
+            if (i < 0)
+                {
+                // Insert the character keeping the keys sorted
+                i = -(i + 1);
+                final char[] keys = new char[this.keys.length + 1];
+                final Node[] children = new Node[this.children.length + 1];
+                System.arraycopy(this.keys, 0, keys, 0, i);
+                System.arraycopy(this.children, 0, children, 0, i);
+                System.arraycopy(this.keys, i, keys, i + 1, this.keys.length - i);
+                System.arraycopy(this.children, i, children, i + 1, this.children.length - i);
+                keys[i] = c;
+                children[i] = new Node();
+                this.keys = keys;
+                this.children = children;
+                }
+            return this.children[i];
+        }
+
+        /** 
+         * Add a row. Rows are added in order so a row is only added once
+         * even if several of its words start with the prefix.
+         * 
+         * @param row - The row to add.
+         */
+        void addRow(final int row) {
+            if ((this.rowCount > 0) && (this.rows[this.rowCount - 1] == row))
+                return;
+            if (this.rowCount == this.rows.length)
+                this.rows = Arrays.copyOf(this.rows, this.rowCount * 2);
+            this.rows[this.rowCount++] = row;
+        }
+
+        /** 
+         * Determine if a row has a word that starts with the prefix.
+         * 
+         * @param row - The row to check.
+         * @return boolean - true if the row has a word starting with the prefix.
+         */
+        boolean hasRow(final int row) {
+            return Arrays.binarySearch(this.rows, 0, this.rowCount, row) >= 0;
+        }
+    }
+
+    /**
+     * Constructor to index the names of all of the categories.
+     * 
+     * @param categories - The categories to index.
+     */
+    CategorySearchIndex(final BudgetCategoriesList categories) {
+        final int count = categories.getCategoryCount();
+        this.parents = new int[count];
+        this.marks = new int[count];
+        for (int row = 0; row < count; row++)
+            {
+            final BudgetCategoryItem item = categories.getCategoryItemByIndex(row);
+            this.parents[row] = item.getParentRow();
+
+            // The full name includes the names of the parent categories and the short name
+            this.addWords(item.getFullName(), row);
+            }
+    }
+
+
+    /** 
+     * Add every prefix of every word of a name to the index.
+     * 
+     * @param name - The name to index.
+     * @param row - The row of the category.
+     */
+    private void addWords(final String name, final int row) {
+        final String text = name.toLowerCase();
+        Node node = null;
+        for (int i = 0; i < text.length(); i++)
+            {
+            final char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c))
+                {
+                // The word has ended
+                node = null;
+                continue;
+                }
+
+            // Start a new word at the root of the tree
+            if (node == null)
+                node = this.root;
+            node = node.add(c);
+            node.addRow(row);
+            }
+    }
+
+
+    /** 
+     * Find the rows of the categories with a word starting with each of the
+     * words in some text, along with the rows of their parent categories so
+     * that the matches are shown under their parents.
+     * 
+     * @param text - The text typed in the search box.
+     * @return int[] - The rows found in order or null if the text has no words
+     * and all of the rows should be shown.
+     */
+    int[] find(final String text) {
+        final String[] words = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+
+        // Find the node for each word
+        final Node[] nodes = new Node[words.length];
+        int wordCount = 0;
+        Node fewest = null;
+        for (final String word : words)
+            {
+            if (word.isEmpty())
+                continue;
+
+            Node node = this.root;
+            for (int i = 0; (node != null) && (i < word.length()); i++)
+                node = node.get(word.charAt(i));
+
+            // Nothing matches if any word isn't found
+            if (node == null)
+                return new int[0];
+
+            nodes[wordCount++] = node;
+            if ((fewest == null) || (node.rowCount < fewest.rowCount))
+                fewest = node;
+            }
+
+        // Show all of the rows if there's nothing to search for
+        if (fewest == null)
+            return null;
+
+        // Check the rows matching the least common word against the other words
+        this.search++;
+        int[] found = new int[Math.min(fewest.rowCount * 2, this.parents.length)];
+        int count = 0;
+        for (int i = 0; i < fewest.rowCount; i++)
+            {
+            final int row = fewest.rows[i];
+            boolean matches = true;
+            for (int w = 0; (matches) && (w < wordCount); w++)
+                matches = (nodes[w] == fewest) || (nodes[w].hasRow(row));
+            if (!matches)
+                continue;
+
+            // Add the row and any of its parents that weren't added yet
+            for (int r = row; (r != -1) && (this.marks[r] != this.search); r = this.parents[r])
+                {
+                this.marks[r] = this.search;
+                if (count == found.length)
+                    found = Arrays.copyOf(found, Math.min(count * 2, this.parents.length));
+                found[count++] = r;
+                }
+            }
+
+        // Show the rows in the same order as the categories
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+}
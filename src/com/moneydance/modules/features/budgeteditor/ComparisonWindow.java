@@ -0,0 +1,277 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import com.infinitekind.moneydance.model.CurrencyType;
+import com.infinitekind.moneydance.model.CurrencyUtil;
+import com.moneydance.apps.md.view.gui.MDColors;
+import com.moneydance.awt.GridC;
+
+/**
+* Window showing the differences between two budgets, or one budget in two
+* years. Each month shows the second budget less the first and the totals
+* of both budgets are shown along with their difference. The categories can
+* be limited to the ones that differ.
+*
+* @author  Jerry Jones
+*/
+public class ComparisonWindow extends JDialog {
+    // Column names - the months show the differences
+    private static final String[] COLUMN_NAMES = {"Category","Jan","Feb","Mar","Apr","May","June","July","Aug","Sep","Oct","Nov","Dec","First Total","Second Total","Difference"};
+
+    // The column of the first budget's totals
+    private static final int FIRST_TOTAL = 13;
+
+    // The column of the second budget's totals
+    private static final int SECOND_TOTAL = 14;
+
+    // The column of the difference between the totals
+    private static final int DIFFERENCE = 15;
+
+    // The differences shown
+    private final BudgetComparison comparison;
+
+    // The budget editor table model, used for the currency the values are shown in
+    private final TableModel model;
+
+    // The model of the table showing the differences
+    private final ComparisonModel comparisonModel = new ComparisonModel();
+
+    // The category rows shown or null to show all of them
+    private int[] rows;
+
+    /**
+     * Constructor to show a comparison.
+     * 
+     * @param owner - The budget editor window.
+     * @param model - The budget editor table model.
+     * @param comparison - The differences to show.
+     */
+    public ComparisonWindow(final JFrame owner, final TableModel model, final BudgetComparison comparison) {
+        super(owner, "Compare Budgets", false);
+        this.model = model;
+        this.comparison = comparison;
+
+        // Get the colors for the current Moneydance theme
+        final MDColors colors = com.moneydance.apps.md.view.gui.MDColors.getSingleton();
+
+        /*
+        ** Top panel - What is being compared
+        */
+        final JPanel topPanel = new JPanel(new GridBagLayout());
+        topPanel.setBackground(colors.headerBG);
+        this.add(topPanel, BorderLayout.NORTH);
+
+        final JLabel titleLabel = new JLabel(comparison.getSecondBudget().getName()+" "+comparison.getSecondYear()+" compared with "+comparison.getFirstBudget().getName()+" "+comparison.getFirstYear());
+        topPanel.add(titleLabel, GridC.getc(0, 0).insets(10, 15, 10, 15));
+
+        // Show only the categories that differ
+        final JCheckBox differingOnly = new JCheckBox("Only show categories that differ");
+        differingOnly.setToolTipText("Select to hide the categories with the same budget in every month");
+        topPanel.add(differingOnly, GridC.getc(1, 0).insets(10, 15, 10, 15));
+        differingOnly.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                ComparisonWindow.this.rows = differingOnly.isSelected() ? ComparisonWindow.this.comparison.getDifferingRows() : null;
+                ComparisonWindow.this.comparisonModel.fireTableDataChanged();
+            }
+        });
+
+        final JLabel countLabel = new JLabel(comparison.getDifferingRows().length+" of "+comparison.getCategories().getCategoryCount()+" categories differ");
+        topPanel.add(countLabel, GridC.getc(2, 0).insets(10, 15, 10, 15));
+
+        /*
+        ** Middle panel - The differences
+        */
+        final JTable table = new JTable(this.comparisonModel);
+        table.setRowHeight(30);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getColumnModel().getColumn(0).setMinWidth(240);
+        final AmountRenderer renderer = new AmountRenderer();
+        for (int i = 1; i < ComparisonWindow.COLUMN_NAMES.length; i++)
+            table.getColumnModel().getColumn(i).setCellRenderer(renderer);
+        this.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        /*
+        ** Bottom panel - Close button
+        */
+        final JPanel bottomPanel = new JPanel(new GridBagLayout());
+        this.add(bottomPanel, BorderLayout.SOUTH);
+        final JButton closeButton = new JButton("Close");
+        bottomPanel.add(closeButton, GridC.getc(0, 0).insets(15, 15, 15, 15));
+        closeButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                ComparisonWindow.this.dispose();
+            }
+        });
+
+        // Size the window a little smaller than the budget editor
+        this.setSize((owner.getWidth() * 9) / 10, (owner.getHeight() * 9) / 10);
+        this.setLocationRelativeTo(owner);
+    }
+
+
+    /** 
+     * Get a value shown in a column converted to the currency it's displayed in.
+     * 
+     * @param item - The category.
+     * @param column - The column [1...15].
+     * @return long - The value.
+     */
+    private long getAmount(final BudgetCategoryItem item, final int column) {
+        final long amount;
+        if (column == ComparisonWindow.FIRST_TOTAL)
+            amount = this.comparison.getFirst(item.getRow(), 13);
+        else if (column == ComparisonWindow.SECOND_TOTAL)
+            amount = this.comparison.getSecond(item.getRow(), 13);
+        else if (column == ComparisonWindow.DIFFERENCE)
+            amount = this.comparison.getDelta(item.getRow(), 13);
+        else
+            amount = this.comparison.getDelta(item.getRow(), column);
+
+        // Convert the value to the displayed currency if needed
+        final CurrencyType displayType = this.model.getDisplayCurrency(item);
+        if (displayType != item.getCurrencyType())
+            return CurrencyUtil.convertValue(amount, item.getCurrencyType(), displayType);
+        return amount;
+    }
+
+
+    /** 
+     * @param row - The row in the table.
+     * @return BudgetCategoryItem - The category shown in the row.
+     */
+    private BudgetCategoryItem getItem(final int row) {
+        return this.comparison.getCategories().getCategoryItemByIndex((this.rows != null) ? this.rows[row] : row);
+    }
+
+
+    /**
+    * Table model for the differences.
+    */
+    private final class ComparisonModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            if (ComparisonWindow.this.rows != null)
+                return ComparisonWindow.this.rows.length;
+            return ComparisonWindow.this.comparison.getCategories().getCategoryCount();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return ComparisonWindow.COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(final int column) {
+            return ComparisonWindow.COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(final int row, final int column) {
+            final BudgetCategoryItem item = ComparisonWindow.this.getItem(row);
+            if (column == 0)
+                return item.getLabel(false);
+            return Long.valueOf(ComparisonWindow.this.getAmount(item, column));
+        }
+    }
+
+
+    /**
+    * Renderer for the amounts. Differences are shown with their sign and 
+    * the months also show both budget values in their tool tip.
+    */
+    private final class AmountRenderer extends DefaultTableCellRenderer {
+        // Default text color
+        private Color foreground;
+
+        /**
+         * Constructor for the renderer.
+         */
+        AmountRenderer() {
+            this.setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(final JTable table, final Object value, final boolean isSelected, final boolean hasFocus, final int row, final int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (this.foreground == null)
+                this.foreground = table.getForeground();
+
+            // Format the amount in the currency it's shown in
+            final BudgetCategoryItem item = ComparisonWindow.this.getItem(row);
+            final CurrencyType displayType = ComparisonWindow.this.model.getDisplayCurrency(item);
+            final long amount = ((Long)value).longValue();
+            final char separator = ComparisonWindow.this.model.getSeparator();
+            final boolean delta = (column != ComparisonWindow.FIRST_TOTAL) && (column != ComparisonWindow.SECOND_TOTAL);
+            this.setText(((delta) && (amount > 0) ? "+" : "")+displayType.formatFancy(amount, separator));
+
+            // Decreases are shown in red
+            this.setForeground(((delta) && (amount < 0)) ? Color.RED : this.foreground);
+
+            // The months show both budget values when hovered over
+            if (column < ComparisonWindow.FIRST_TOTAL)
+                {
+                long first = ComparisonWindow.this.comparison.getFirst(item.getRow(), column);
+                long second = ComparisonWindow.this.comparison.getSecond(item.getRow(), column);
+                if (displayType != item.getCurrencyType())
+                    {
+                    first = CurrencyUtil.convertValue(first, item.getCurrencyType(), displayType);
+                    second = CurrencyUtil.convertValue(second, item.getCurrencyType(), displayType);
+                    }
+                this.setToolTipText(displayType.formatFancy(first, separator)+" \u2192 "+displayType.formatFancy(second, separator));
+                }
+            else
+                this.setToolTipText(null);
+            return this;
+        }
+    }
+}
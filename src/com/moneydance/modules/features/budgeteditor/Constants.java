@@ -45,5 +45,20 @@ public abstract class Constants
     public static String MBE_SETTINGS               = "MonthlyBudgetEditor_settings";   // Settings 
     public static final int SETTINGS_VERSION_1      = 1;                                // Version 1 of the settings
     public static final int V1_NUM_MBR_SETTINGS     = 3;                                // Number of MBB_Settings in version 1 settings: (Version, Budget name, UseCategoryCurrency)
+    public static final int SETTINGS_VERSION_2      = 2;                                // Version 2 of the settings
+    public static final int V2_NUM_MBR_SETTINGS     = 4;                                // Number of MBB_Settings in version 2 settings: (Version 1 settings, CompactStorage)
+    public static final int SETTINGS_VERSION_3      = 3;                                // Version 3 of the settings
+    public static final int V3_NUM_MBR_SETTINGS     = 5;                                // Number of MBB_Settings in version 3 settings: (Version 2 settings, PurgeOnSave)
+    public static final int SETTINGS_VERSION_4      = 4;                                // Version 4 of the settings
+    public static final int V4_NUM_MBR_SETTINGS     = 6;                                // Number of MBB_Settings in version 4 settings: (Version 3 settings, KeepLoaded)
+    public static final int SETTINGS_VERSION_5      = 5;                                // Version 5 of the settings
+    public static final int V5_NUM_MBR_SETTINGS     = 8;                                // Number of MBB_Settings in version 5 settings: (Version 4 settings, FirstMonth, MonthCount)
+    public static final int SETTINGS_VERSION_6      = 6;                                // Version 6 of the settings
+    public static final int V6_NUM_MBR_SETTINGS     = 9;                                // Number of MBB_Settings in version 6 settings: (Version 5 settings, ShowReference)
+
+    /*
+     * Debugging
+     */
+    public static final boolean DEBUG               = Boolean.getBoolean("budgeteditor.debug"); // Log timings to the console when run with -Dbudgeteditor.debug=true
  
 }
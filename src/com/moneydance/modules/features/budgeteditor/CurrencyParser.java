@@ -0,0 +1,287 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+import com.infinitekind.moneydance.model.CurrencyType;
+
+/**
+* Parses amounts typed or pasted for a currency into the currency's long
+* value. The text is read in place, character by character, so no strings
+* are created and no regular expressions are run for each amount. The
+* currency prefix and suffix are allowed, the decimal separator of the
+* locale, or failing that a period or comma, is taken as the decimal point
+* when it's followed by no more digits than the currency's decimal places,
+* other periods, commas, spaces, apostrophes and the grouping separator of
+* the locale are taken as digit separators and a leading or trailing minus
+* sign or parentheses make the amount negative. Text that isn't an amount
+* is rejected by returning INVALID rather than by throwing an exception.
+*
+* @author  Jerry Jones
+*/
+final class CurrencyParser {
+    // Returned when the text isn't an amount
+    static final long INVALID = Long.MIN_VALUE;
+
+    // The most digits that fit in a long
+    private static final int MAX_DIGITS = 18;
+
+    // The decimal and digit grouping separators of the locale
+    private static final char LOCALE_DECIMAL;
+    private static final char LOCALE_GROUPING;
+    static
+        {
+        final DecimalFormatSymbols symbols = ((DecimalFormat) DecimalFormat.getInstance()).getDecimalFormatSymbols();
+        LOCALE_DECIMAL = symbols.getDecimalSeparator();
+        LOCALE_GROUPING = symbols.getGroupingSeparator();
+        }
+
+    // The currency prefix or an empty string
+    private final String prefix;
+
+    // The currency suffix or an empty string
+    private final String suffix;
+
+    // The number of decimal places of the currency
+    private final int decimalPlaces;
+
+    /**
+     * Constructor for a parser for a currency.
+     * 
+     * @param type - The currency the amounts are in.
+     */
+    CurrencyParser(final CurrencyType type) {
+        this(type.getPrefix(), type.getSuffix(), type.getDecimalPlaces());
+    }
+
+
+    /**
+     * Constructor for a parser given the currency's symbols and decimal places.
+     * 
+     * @param prefix - The currency prefix or null.
+     * @param suffix - The currency suffix or null.
+     * @param decimalPlaces - The number of decimal places of the currency.
+     */
+    CurrencyParser(final String prefix, final String suffix, final int decimalPlaces) {
+        this.prefix = CurrencyParser.trim(prefix);
+        this.suffix = CurrencyParser.trim(suffix);
+        this.decimalPlaces = decimalPlaces;
+    }
+
+
+    /** 
+     * @param text - The text to trim or null.
+     * @return String - The text without leading and trailing spaces or an empty string.
+     */
+    private static String trim(final String text) {
+        return (text == null) ? "" : text.trim();
+    }
+
+
+    /** 
+     * Parse all of a string.
+     * 
+     * @param text - The text to parse.
+     * @return long - The amount or INVALID if the text isn't an amount.
+     */
+    long parse(final CharSequence text) {
+        return this.parse(text, 0, text.length());
+    }
+
+
+    /** 
+     * Parse part of some text.
+     * 
+     * @param text - The text to parse.
+     * @param start - The index of the first character to parse.
+     * @param end - The index after the last character to parse.
+     * @return long - The amount or INVALID if the text isn't an amount.
+     */
+    long parse(final CharSequence text, int start, int end) {
+        boolean negative = false;
+
+        // Remove spaces, a minus sign, parentheses and the currency symbols from either end
+        boolean trimmed = true;
+        while (trimmed)
+            {
+            trimmed = false;
+            while ((start < end) && (CurrencyParser.isSpace(text.charAt(start))))
+                start++;
+            while ((end > start) && (CurrencyParser.isSpace(text.charAt(end - 1))))
+                end--;
+            if (start == end)
+                return CurrencyParser.INVALID;
+
+            if ((text.charAt(start) == '(') && (text.charAt(end - 1) == ')') && (end - start > 1) && (!negative))
+                {
+                negative = true;
+                start++;
+                end--;
+                trimmed = true;
+                }
+            else if ((text.charAt(start) == '-') && (!negative))
+                {
+                negative = true;
+                start++;
+                trimmed = true;
+                }
+            else if ((text.charAt(end - 1) == '-') && (!negative))
+                {
+                negative = true;
+                end--;
+                trimmed = true;
+                }
+            else if ((!this.prefix.isEmpty()) && (CurrencyParser.startsWith(text, start, end, this.prefix)))
+                {
+                start += this.prefix.length();
+                trimmed = true;
+                }
+            else if ((!this.suffix.isEmpty()) && (CurrencyParser.endsWith(text, start, end, this.suffix)))
+                {
+                end -= this.suffix.length();
+                trimmed = true;
+                }
+            }
+
+        // The decimal point is the last decimal separator of the locale, or failing that the last period
+        // or comma, if it has no more digits after it than the currency allows
+        int decimalPoint = -1;
+        if (this.decimalPlaces > 0)
+            {
+            for (int i = end - 1; (i >= start) && (end - 1 - i <= this.decimalPlaces); i--)
+                {
+                final char c = text.charAt(i);
+                if (c == CurrencyParser.LOCALE_DECIMAL)
+                    {
+                    decimalPoint = i;
+                    break;
+                    }
+                if (((c == '.') || (c == ',')) && (decimalPoint == -1))
+                    decimalPoint = i;
+                }
+            }
+
+        // Add up the digits, skipping the digit separators
+        long value = 0;
+        int digits = 0;
+        int decimals = 0;
+        for (int i = start; i < end; i++)
+            {
+            final char c = text.charAt(i);
+            if ((c >= '0') && (c <= '9'))
+                {
+                if (++digits > CurrencyParser.MAX_DIGITS)
+                    return CurrencyParser.INVALID;
+                value = (value * 10) + (c - '0');
+                if ((decimalPoint != -1) && (i > decimalPoint))
+                    decimals++;
+                }
+            else if (i == decimalPoint)
+                continue;
+            // Only digits can follow the decimal point
+            else if ((decimalPoint != -1) && (i > decimalPoint))
+                return CurrencyParser.INVALID;
+            else if ((c != '.') && (c != ',') && (c != '\'') && (c != CurrencyParser.LOCALE_GROUPING) && (!CurrencyParser.isSpace(c)))
+                return CurrencyParser.INVALID;
+            }
+        if (digits == 0)
+            return CurrencyParser.INVALID;
+
+        // Make up the decimal places not entered
+        for (; decimals < this.decimalPlaces; decimals++)
+            {
+            if (++digits > CurrencyParser.MAX_DIGITS)
+                return CurrencyParser.INVALID;
+            value *= 10;
+            }
+        return negative ? -value : value;
+    }
+
+
+    /** 
+     * Determine if part of some text is empty or only spaces.
+     * 
+     * @param text - The text to check.
+     * @param start - The index of the first character to check.
+     * @param end - The index after the last character to check.
+     * @return boolean - true if there's nothing but spaces.
+     */
+    static boolean isBlank(final CharSequence text, final int start, final int end) {
+        for (int i = start; i < end; i++)
+            {
+            if (!CurrencyParser.isSpace(text.charAt(i)))
+                return false;
+            }
+        return true;
+    }
+
+
+    /** 
+     * @param c - The character to check.
+     * @return boolean - true if the character is a space, including the non-breaking spaces spreadsheets use.
+     */
+    private static boolean isSpace(final char c) {
+        return (c == ' ') || (c == '\u00A0') || (c == '\u202F') || (c == '\t');
+    }
+
+
+    /** 
+     * @param text - The text to check.
+     * @param start - The index of the first character.
+     * @param end - The index after the last character.
+     * @param match - The text to look for.
+     * @return boolean - true if the text starts with the text to look for.
+     */
+    private static boolean startsWith(final CharSequence text, final int start, final int end, final String match) {
+        if (end - start < match.length())
+            return false;
+        for (int i = 0; i < match.length(); i++)
+            {
+            if (text.charAt(start + i) != match.charAt(i))
+                return false;
+            }
+        return true;
+    }
+
+
+    /** 
+     * @param text - The text to check.
+     * @param start - The index of the first character.
+     * @param end - The index after the last character.
+     * @param match - The text to look for.
+     * @return boolean - true if the text ends with the text to look for.
+     */
+    private static boolean endsWith(final CharSequence text, final int start, final int end, final String match) {
+        return (end - match.length() >= start) && (CurrencyParser.startsWith(text, end - match.length(), end, match));
+    }
+}
@@ -30,14 +30,17 @@
  */ 
 package com.moneydance.modules.features.budgeteditor;
 
+import java.awt.Color;
 import java.awt.Component;
+import java.awt.Toolkit;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
 import javax.swing.DefaultCellEditor;
-import javax.swing.JPopupMenu;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.border.Border;
+import javax.swing.border.LineBorder;
 
 /**
 * Subclass the default cell editor to add additional capability.
@@ -51,6 +54,9 @@ public class CurrencyTableCellEditor extends DefaultCellEditor {
     // The table using this editor
     Table table;    
 
+    // The border of the editor when the text is valid
+    private final Border normalBorder;
+
     public CurrencyTableCellEditor(final Table table, final JTextField textField) {
         // Construct the default cell editor
         super(textField);
@@ -61,6 +67,9 @@ public class CurrencyTableCellEditor extends DefaultCellEditor {
         // Set cell alignment during edit
         textField.setHorizontalAlignment(JTextField.RIGHT);
 
+        // Save the border to restore it after invalid text is corrected
+        this.normalBorder = textField.getBorder();
+
         // Click each cell only once to enter edit mode
         this.setClickCountToStart(1);
 
@@ -93,6 +102,7 @@ public class CurrencyTableCellEditor extends DefaultCellEditor {
         // Set text field properties
         final JTextField tf = (JTextField)this.getComponent();
         tf.setHorizontalAlignment(JTextField.RIGHT);
+        tf.setBorder(this.normalBorder);
 
         // Select the text in the editor so that typing will replace the value
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
@@ -105,6 +115,28 @@ public class CurrencyTableCellEditor extends DefaultCellEditor {
         return c;
     }
 
+    /** 
+     * This method overrides the default function to check the text typed
+     * before editing stops. Text that isn't an amount is highlighted and the
+     * editor stays open so that it can be corrected.
+     * 
+     * @return boolean - true if editing stopped, false if the text isn't valid.
+     */
+    @Override
+    public boolean stopCellEditing() {
+        final JTextField tf = (JTextField)this.getComponent();
+        final int row = this.table.getEditingRow();
+        if ((row != -1) && (((TableModel)this.table.getModel()).parseInput(row, tf.getText()) == CurrencyParser.INVALID))
+            {
+            tf.setBorder(new LineBorder(Color.RED));
+            Toolkit.getDefaultToolkit().beep();
+            return false;
+            }
+        tf.setBorder(this.normalBorder);
+        return super.stopCellEditing();
+    }
+
+
     /**
      * This method pops up a menu when a right-click occurs on a cell being 
      * edited.
@@ -112,22 +144,20 @@ public class CurrencyTableCellEditor extends DefaultCellEditor {
      * @param me - The mouse event that got us here
      */
     private void showPopup (final MouseEvent me) {
-		// Create new popup menu
-		final JPopupMenu popMenu = new JPopupMenu();		
-
         // is this event a popup trigger?
-        if (popMenu.isPopupTrigger(me)) 
+        if (me.isPopupTrigger()) 
             {
             // Get row and column of the cell in the table
             final int row = this.table.getEditingRow();
             final int col = this.table.getEditingColumn();
 
 
-            // Stop cell editing to close the editor
-            this.stopCellEditing();
+            // Stop cell editing to close the editor, text that isn't valid has to be corrected first
+            if (!this.stopCellEditing())
+                return;
        
             // Go do the popup
-            this.table.doShowPopup(popMenu, row, col);
+            this.table.doShowPopup(row, col);
             }
     }
 }
\ No newline at end of file
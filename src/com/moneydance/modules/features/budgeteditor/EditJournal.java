@@ -0,0 +1,430 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.infinitekind.moneydance.model.AccountBook;
+
+/**
+* Write-ahead journal of budget edits.
+* Every budget value edited is appended to the journal as a fixed size record
+* so that edits that were not saved can be recovered if Moneydance exits 
+* unexpectedly. Records are buffered and written to disk by a background 
+* thread a few times a second so that journaling doesn't slow down editing.
+* The buffer is swapped for a spare one before it is written so that adding
+* an edit never waits for the disk. The journal is cleared whenever the edits
+* are saved or discarded.
+*
+* <p><b>Note:</b> Each record is protected by a CRC so that a record that was
+* only partly written when Moneydance exited is ignored.
+*
+* @author  Jerry Jones
+*/
+public class EditJournal {
+    // Journal file name, the journal is kept in the data file's folder
+    private static final String FILE_NAME = "budgeteditor.journal";
+
+    // File header - "MBEJ" and the format version
+    private static final int MAGIC = 0x4D42454A;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // Record layout - budget key, category UUID, year, month, value and CRC
+    private static final int KEY_SIZE = 40;
+    private static final int RECORD_SIZE = 104;
+    private static final int CRC_OFFSET = 96;
+
+    // Number of records buffered before they are written
+    private static final int BUFFER_RECORDS = 64;
+
+    // Milliseconds between writes to disk
+    private static final long SYNC_INTERVAL = 250;
+
+    /**
+    * A single journaled edit.
+    */
+    public static final class Edit {
+        // The key of the budget edited
+        final String budgetKey;
+
+        // The UUID of the category edited
+        final String uuid;
+
+        // The budget year edited
+        final int year;
+
+        // The month edited (1...12)
+        final int month;
+
+        // The new budget value
+        final long value;
+
+        /**
+         * Constructor for an edit.
+         * 
+         * @param budgetKey - The key of the budget edited.
+         * @param uuid - The UUID of the category edited.
+         * @param year - The budget year edited.
+         * @param month - The month edited (1...12).
+         * @param value - The new budget value.
+         */
+        Edit(final String budgetKey, final String uuid, final int year, final int month, final long value) {
+            this.budgetKey = budgetKey;
+            this.uuid = uuid;
+            this.year = year;
+            this.month = month;
+            this.value = value;
+        }
+    }
+
+    // The journal file
+    private final FileChannel channel;
+
+    // Records waiting to be written, guarded by this
+    private ByteBuffer buffer = ByteBuffer.allocate(EditJournal.RECORD_SIZE * EditJournal.BUFFER_RECORDS);
+
+    // Buffer to take the place of the records being written, guarded by this
+    private ByteBuffer spare = ByteBuffer.allocate(EditJournal.RECORD_SIZE * EditJournal.BUFFER_RECORDS);
+
+    // CRC calculator for the records added, guarded by this
+    private final CRC32 crc = new CRC32();
+
+    // Lock held while the journal file is used, taken before this when both are needed
+    private final Object fileLock = new Object();
+
+    // Background thread that writes the records to disk
+    private final ScheduledExecutorService syncer;
+
+    // When true records have been written that haven't been forced to disk, guarded by fileLock
+    private boolean unsynced = false;
+
+    /**
+     * Open the journal for an account book.
+     * 
+     * @param book - The account book in use.
+     * @return EditJournal - The journal or null if the journal could not be opened.
+     */
+    public static EditJournal open(final AccountBook book) {
+        final File folder = book.getRootFolder();
+        if (folder == null)
+            return null;
+
+        try
+            {
+            return new EditJournal(new File(folder, EditJournal.FILE_NAME));
+            }
+        catch (final IOException e)
+            {
+            e.printStackTrace();
+            System.err.println("ERROR: Cannot open the edit journal in '"+folder+"'.");
+            return null;
+            }
+    }
+
+    /**
+     * Constructor to open a journal file.
+     * 
+     * @param file - The journal file.
+     * @throws IOException - If the file can't be opened.
+     */
+    private EditJournal(final File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        // Start a new journal if this isn't a valid journal file
+        final ByteBuffer header = ByteBuffer.allocate(EditJournal.HEADER_SIZE);
+        if ((this.channel.read(header, 0) != EditJournal.HEADER_SIZE) || (header.getInt(0) != EditJournal.MAGIC) || (header.getInt(4) != EditJournal.VERSION))
+            {
+            header.clear();
+            header.putInt(EditJournal.MAGIC).putInt(EditJournal.VERSION).flip();
+            this.channel.truncate(0);
+            this.channel.write(header, 0);
+            this.channel.force(true);
+            }
+
+        // New records are added after the last complete record
+        final long records = (this.channel.size() - EditJournal.HEADER_SIZE) / EditJournal.RECORD_SIZE;
+        this.channel.position(EditJournal.HEADER_SIZE + (records * EditJournal.RECORD_SIZE));
+
+        // Write the records to disk in the background
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "Monthly Budget Editor journal");
+            t.setDaemon(true);
+            return t;
+        });
+        this.syncer.scheduleWithFixedDelay(this::sync, EditJournal.SYNC_INTERVAL, EditJournal.SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+
+    /** 
+     * Add an edit to the journal.
+     * 
+     * @param budgetKey - The key of the budget edited.
+     * @param uuid - The UUID of the category edited.
+     * @param year - The budget year edited.
+     * @param month - The month edited (1...12).
+     * @param value - The new budget value.
+     */
+    public synchronized void append(final String budgetKey, final String uuid, final int year, final int month, final long value) {
+        // A key that doesn't fit could be replayed against the wrong cell so the edit isn't journaled
+        final byte[] keyBytes = budgetKey.getBytes(StandardCharsets.UTF_8);
+        final byte[] uuidBytes = uuid.getBytes(StandardCharsets.UTF_8);
+        if ((keyBytes.length >= EditJournal.KEY_SIZE) || (uuidBytes.length >= EditJournal.KEY_SIZE))
+            {
+            System.err.println("ERROR: Budget key '"+budgetKey+"' or category UUID '"+uuid+"' is too long for the edit journal, the edit can't be recovered.");
+            return;
+            }
+
+        // Make room for more records rather than wait for the disk
+        if (!this.buffer.hasRemaining())
+            {
+            final ByteBuffer larger = ByteBuffer.allocate(this.buffer.capacity() * 2);
+            this.buffer.flip();
+            larger.put(this.buffer);
+            this.buffer = larger;
+            }
+
+        final int start = this.buffer.position();
+        this.putString(keyBytes);
+        this.putString(uuidBytes);
+        this.buffer.putInt(year);
+        this.buffer.putInt(month);
+        this.buffer.putLong(value);
+        this.crc.reset();
+        this.crc.update(this.buffer.array(), start, EditJournal.CRC_OFFSET);
+        this.buffer.putInt((int)this.crc.getValue());
+        this.buffer.putInt(0);
+    }
+
+
+    /** 
+     * Write the buffered records and force them to disk. Edits can be added
+     * while the records are written.
+     */
+    public void sync() {
+        synchronized (this.fileLock)
+            {
+            // Take the records and let new ones go in the spare buffer
+            final ByteBuffer records;
+            synchronized (this)
+                {
+                records = this.buffer;
+                this.buffer = this.spare;
+                }
+
+            try 
+                {
+                if (records.position() != 0)
+                    this.write(records);
+
+                if (this.unsynced)
+                    {
+                    this.channel.force(false);
+                    this.unsynced = false;
+                    }
+                }
+            catch (final IOException e)
+                {
+                e.printStackTrace();
+                System.err.println("ERROR: Cannot sync the edit journal.");
+                }
+            finally
+                {
+                // The buffer written is the spare for next time
+                records.clear();
+                synchronized (this)
+                    {
+                    this.spare = records;
+                    }
+                }
+            }
+    }
+
+
+    /** 
+     * Read all of the complete records in the journal.
+     * 
+     * @return List<Edit> - The edits in the order they were made.
+     */
+    public List<Edit> read() {
+        synchronized (this.fileLock)
+            {
+            this.sync();
+            return this.readRecords();
+            }
+    }
+
+
+    /** 
+     * Read the complete records written to the journal file.
+     * 
+     * @return List<Edit> - The edits in the order they were made.
+     */
+    private List<Edit> readRecords() {
+        final List<Edit> edits = new ArrayList<Edit>();
+        final CRC32 recordCrc = new CRC32();
+        try
+            {
+            final ByteBuffer records = ByteBuffer.allocate(EditJournal.RECORD_SIZE * EditJournal.BUFFER_RECORDS);
+            long position = EditJournal.HEADER_SIZE;
+            int count;
+            while ((count = this.channel.read(records, position)) > 0)
+                {
+                position += count;
+                records.flip();
+                while (records.remaining() >= EditJournal.RECORD_SIZE)
+                    {
+                    // Stop at the first record that wasn't completely written
+                    final int start = records.position();
+                    recordCrc.reset();
+                    recordCrc.update(records.array(), start, EditJournal.CRC_OFFSET);
+                    if (records.getInt(start + EditJournal.CRC_OFFSET) != (int)recordCrc.getValue())
+                        return edits;
+
+                    final String budgetKey = EditJournal.getString(records);
+                    final String uuid = EditJournal.getString(records);
+                    final int year = records.getInt();
+                    final int month = records.getInt();
+                    final long value = records.getLong();
+                    records.position(start + EditJournal.RECORD_SIZE);
+                    edits.add(new Edit(budgetKey, uuid, year, month, value));
+                    }
+                records.compact();
+                }
+            }
+        catch (final IOException e)
+            {
+            e.printStackTrace();
+            System.err.println("ERROR: Cannot read the edit journal.");
+            }
+        return edits;
+    }
+
+
+    /** 
+     * Remove all of the edits from the journal. This is done when the edits
+     * are saved or discarded.
+     */
+    public void clear() {
+        synchronized (this.fileLock)
+            {
+            synchronized (this)
+                {
+                this.buffer.clear();
+                }
+            try
+                {
+                this.channel.truncate(EditJournal.HEADER_SIZE);
+                this.channel.position(EditJournal.HEADER_SIZE);
+                this.channel.force(false);
+                this.unsynced = false;
+                }
+            catch (final IOException e)
+                {
+                e.printStackTrace();
+                System.err.println("ERROR: Cannot clear the edit journal.");
+                }
+            }
+    }
+
+
+    /** 
+     * Write any remaining edits and close the journal.
+     */
+    public void close() {
+        this.syncer.shutdown();
+        synchronized (this.fileLock)
+            {
+            this.sync();
+            try
+                {
+                this.channel.close();
+                }
+            catch (final IOException e)
+                {
+                e.printStackTrace();
+                }
+            }
+    }
+
+
+    /** 
+     * Write records to the journal file. The caller holds fileLock.
+     * 
+     * @param records - The records to write.
+     * @throws IOException - If the records can't be written.
+     */
+    private void write(final ByteBuffer records) throws IOException {
+        records.flip();
+        while (records.hasRemaining())
+            this.channel.write(records);
+        this.unsynced = true;
+    }
+
+
+    /** 
+     * Add a fixed size string to the buffer.
+     * 
+     * @param bytes - The UTF-8 bytes of the string, less than KEY_SIZE long.
+     */
+    private void putString(final byte[] bytes) {
+        this.buffer.put((byte)bytes.length);
+        this.buffer.put(bytes);
+        for (int i = bytes.length + 1; i < EditJournal.KEY_SIZE; i++)
+            this.buffer.put((byte)0);
+    }
+
+
+    /** 
+     * Get a fixed size string from a buffer.
+     * 
+     * @param records - The buffer to read from.
+     * @return String - The string read.
+     */
+    private static String getString(final ByteBuffer records) {
+        final int start = records.position();
+        final int length = records.get() & 0xFF;
+        final String value = new String(records.array(), start + 1, length, StandardCharsets.UTF_8);
+        records.position(start + EditJournal.KEY_SIZE);
+        return value;
+    }
+}
@@ -25,6 +25,7 @@
  */
 package com.moneydance.modules.features.budgeteditor;
 
+import java.awt.Point;
 import java.awt.event.ActionEvent;
 
 import javax.swing.JTable;
@@ -45,6 +46,9 @@ public class EditableCellFocusAction extends WrappedAction
 {
 	private final JTable table;
 
+	// The direction to move for a budget Table or -1 to use the original action
+	private final int direction;
+
 	/**
 	 * Constructor to specify the component and KeyStroke for the Action we want
 	 * to wrap.
@@ -56,6 +60,31 @@ public class EditableCellFocusAction extends WrappedAction
 	{
 		super(table, keyStroke);
 		this.table = table;
+		this.direction = EditableCellFocusAction.getDirection(keyStroke);
+	}
+
+
+	/** 
+	 * Get the budget Table navigation direction for a keystroke.
+	 * 
+	 * @param keyStroke - The keystroke to act on.
+	 * @return int - The direction to move or -1 if the keystroke isn't a navigation key.
+	 */
+	private static int getDirection(final KeyStroke keyStroke)
+	{
+		if (keyStroke.equals(KeyStroke.getKeyStroke("TAB")))
+			return Table.MOVE_NEXT;
+		if (keyStroke.equals(KeyStroke.getKeyStroke("shift TAB")))
+			return Table.MOVE_PREVIOUS;
+		if (keyStroke.equals(KeyStroke.getKeyStroke("RIGHT")))
+			return Table.MOVE_RIGHT;
+		if (keyStroke.equals(KeyStroke.getKeyStroke("LEFT")))
+			return Table.MOVE_LEFT;
+		if (keyStroke.equals(KeyStroke.getKeyStroke("DOWN")))
+			return Table.MOVE_DOWN;
+		if (keyStroke.equals(KeyStroke.getKeyStroke("UP")))
+			return Table.MOVE_UP;
+		return -1;
 	}
 
 	
@@ -66,6 +95,19 @@ public class EditableCellFocusAction extends WrappedAction
 	 */
 	public void actionPerformed(final ActionEvent e)
 	{
+		// A budget Table knows where the editable cells are so jump straight there
+		if ((this.direction != -1) && (this.table instanceof Table))
+			{
+			// Finish any edit in progress first, the same as the original action
+			if ((this.table.isEditing()) && (!this.table.getCellEditor().stopCellEditing()))
+				return;
+
+			final Point target = ((Table)this.table).findEditableCell(this.table.getSelectedRow(), this.table.getSelectedColumn(), this.direction);
+			if (target != null)
+				this.table.changeSelection(target.y, target.x, false, false);
+			return;
+			}
+
 		final int originalRow = this.table.getSelectedRow();
 		final int originalColumn = this.table.getSelectedColumn();
 
@@ -7,12 +7,20 @@ import java.awt.Image;
 import java.awt.Toolkit;
 import java.io.ByteArrayOutputStream;
 
+import com.infinitekind.moneydance.model.AccountBook;
+
 import com.moneydance.apps.md.controller.FeatureModule;
 import com.moneydance.apps.md.controller.FeatureModuleContext;
 
 public class Main extends FeatureModule {
   private BudgetEditorWindow budgetEditorWindow = null;
 
+  // Budget data kept after the window closes so that it opens again quickly
+  private TableModel cachedModel = null;
+
+  // Actual spending totals kept between uses of the editor
+  private ActualsCache actualsCache = null;
+
   public void init() {
     // the first thing we will do is register this module to be invoked via the application toolbar
     final FeatureModuleContext context = this.getContext();
@@ -61,15 +69,104 @@ public class Main extends FeatureModule {
 
   
   /**
-   * Called to close the window.
+   * Called to close the window. The budget data is kept for next time if
+   * that was selected and there are no edits that weren't saved.
    */
   synchronized void closeConsole() {
     if (this.budgetEditorWindow != null) {
+      final TableModel model = this.budgetEditorWindow.getModel();
+      final boolean keep = (this.budgetEditorWindow.keepLoaded != null) && (this.budgetEditorWindow.keepLoaded.isSelected());
       this.budgetEditorWindow.setVisible(false);
       this.budgetEditorWindow.dispose();
       this.budgetEditorWindow = null;
-      System.gc();
+
+      if (model != null) {
+        if ((keep) && (model.isLoaded()) && (!model.hasEdits())) {
+          this.releaseModel();
+          this.cachedModel = model;
+        }
+        else
+          model.close();
+      }
+    }
+  }
+
+
+  /** 
+   * Get the budget data kept from the last time the window was open. The
+   * caller owns the data returned.
+   * 
+   * @return TableModel - The budget data or null if none was kept.
+   */
+  synchronized TableModel takeCachedModel() {
+    final TableModel model = this.cachedModel;
+    this.cachedModel = null;
+    return model;
+  }
+
+
+  /** 
+   * Get the actual spending totals for the current data file.
+   * 
+   * @return ActualsCache - The actual spending totals.
+   */
+  synchronized ActualsCache getActualsCache() {
+    final AccountBook book = this.getContext().getCurrentAccountBook();
+    if ((this.actualsCache == null) || (this.actualsCache.getBook() != book)) {
+      if (this.actualsCache != null)
+        this.actualsCache.close();
+      this.actualsCache = new ActualsCache(book);
     }
+    return this.actualsCache;
+  }
+
+
+  /** 
+   * Forget the budget data kept from the last time the window was open.
+   */
+  private synchronized void releaseModel() {
+    if (this.cachedModel != null) {
+      this.cachedModel.close();
+      this.cachedModel = null;
+    }
+  }
+
+
+  /** 
+   * Forget all data kept for the current data file.
+   */
+  private synchronized void releaseCaches() {
+    this.releaseModel();
+    if (this.actualsCache != null) {
+      this.actualsCache.close();
+      this.actualsCache = null;
+    }
+    MyBudgetList.release();
+  }
+
+
+  /** 
+   * Close the window and forget the data kept for a data file when it is
+   * closed. Edits that weren't saved stay in the journal to be recovered.
+   * 
+   * @param appEvent - The Moneydance event.
+   */
+  @Override
+  public void handleEvent(final String appEvent) {
+    if ("md:file:closing".equals(appEvent)) {
+      this.closeConsole();
+      this.releaseCaches();
+    }
+  }
+
+
+  /** 
+   * Close the window and forget the data kept when the extension is removed.
+   */
+  @Override
+  public void cleanup() {
+    this.closeConsole();
+    this.releaseCaches();
   }
 
   
@@ -107,7 +204,12 @@ public class Main extends FeatureModule {
       if (this.budgetEditorWindow != null) 
         {
         if (!this.budgetEditorWindow.bError)
+          {
           this.budgetEditorWindow.setVisible(true);
+
+          // Load the budget data now that the window is showing
+          this.budgetEditorWindow.loadData();
+          }
         else 
           {
           this.closeConsole();
@@ -117,8 +219,8 @@ public class Main extends FeatureModule {
      }
     else 
       {
-      // Force a reload if the window is already initialized.
-      this.budgetEditorWindow.getModel().LoadData();
+      // Apply any changes made in Moneydance if the window is already initialized.
+      this.budgetEditorWindow.getModel().refresh();
       this.budgetEditorWindow.setVisible(true);
       this.budgetEditorWindow.toFront();
       this.budgetEditorWindow.requestFocus();
@@ -0,0 +1,331 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.table.TableCellRenderer;
+
+import com.infinitekind.moneydance.model.CurrencyType;
+
+/**
+* Renderer for the budget value and total cells of the table.
+* The amount for the cell is formatted into a reusable character buffer and
+* drawn right aligned directly rather than building a String and laying out
+* a JLabel for every cell painted. When the budget of the year before is
+* shown it is drawn the same way, smaller and dimmed, at the left of the cell.
+*
+* @author  Jerry Jones
+*/
+public class MoneyCellRenderer extends JComponent implements TableCellRenderer {
+    // Number of spaces to leave at the right end of the totals column
+    private static final int TOTAL_PADDING = 4;
+
+    // When true the cells are in the totals column
+    private final boolean total;
+
+    // The decimal separator character
+    private final char decimalSeparator;
+
+    // The digit grouping character
+    private final char groupingSeparator;
+
+    // Buffer the amount is formatted into. The text is at the end of the buffer.
+    private char[] text = new char[64];
+
+    // Start of the formatted amount in the buffer
+    private int start;
+
+    // When true the budget of the year before is drawn in the cell
+    private boolean showReference;
+
+    // Buffer the budget of the year before is formatted into. The text is at the end of the buffer.
+    private char[] reference = new char[64];
+
+    // Start of the formatted budget of the year before in the buffer
+    private int referenceStart;
+
+    // The font for the budget of the year before
+    private Font referenceFont;
+
+    // Font metrics for the budget of the year before
+    private FontMetrics referenceMetrics;
+
+    // The colors the dimmed color was worked out from and the dimmed color
+    private Color dimForeground;
+    private Color dimBackground;
+    private Color dimColor;
+
+    // The font the font metrics are for
+    private Font metricsFont;
+
+    // Font metrics for the table font
+    private FontMetrics metrics;
+
+    // The desktop text antialiasing settings so text matches the other cells
+    @SuppressWarnings("unchecked")
+    private static final Map<RenderingHints.Key, Object> desktopHints = (Map<RenderingHints.Key, Object>)Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+
+    /**
+     * Constructor for the renderer.
+     * 
+     * @param total - true if this renderer is for the totals column.
+     */
+    public MoneyCellRenderer(final boolean total) {
+        // Save the column type
+        this.total = total;
+
+        // Get the separators for this locale
+        final DecimalFormatSymbols symbols = ((DecimalFormat) DecimalFormat.getInstance()).getDecimalFormatSymbols();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.groupingSeparator = symbols.getGroupingSeparator();
+
+        // Cells paint their own background
+        this.setOpaque(true);
+    }
+
+
+    /** 
+     * Get the component used to draw a cell.
+     * 
+     * @param table - The table being painted.
+     * @param value - The value of the cell. Not used, the amount is read from the model.
+     * @param isSelected - true if the cell is selected.
+     * @param hasFocus - true if the cell has the focus.
+     * @param row - The row of the cell.
+     * @param column - The column of the cell.
+     * @return Component - This renderer.
+     */
+    @Override
+    public Component getTableCellRendererComponent(final JTable table, final Object value, final boolean isSelected, final boolean hasFocus, final int row, final int column) {
+        // Format the amount for the cell
+        final TableModel model = (TableModel) table.getModel();
+        final CurrencyType type = model.getDisplayCurrencyAt(row);
+        this.text = MoneyCellRenderer.fit(this.text, type);
+        this.start = this.format(this.text, model.getDisplayAmountAt(row, column), type);
+
+        // Format the budget of the year before for the months
+        this.showReference = (!this.total) && (model.isReferenceShown());
+        if (this.showReference)
+            {
+            this.reference = MoneyCellRenderer.fit(this.reference, type);
+            this.referenceStart = this.format(this.reference, model.getReferenceAmountAt(row, column), type);
+            }
+
+        // Default colors and font, the table sets the final colors
+        this.setFont(table.getFont());
+        this.setForeground(table.getForeground());
+        this.setBackground(table.getBackground());
+        return this;
+    }
+
+
+    /** 
+     * Draw the formatted amount right aligned and centered vertically.
+     * 
+     * @param g - The graphics context to draw with.
+     */
+    @Override
+    protected void paintComponent(final Graphics g) {
+        final int width = this.getWidth();
+        final int height = this.getHeight();
+
+        // Fill the background
+        if (this.isOpaque())
+            {
+            g.setColor(this.getBackground());
+            g.fillRect(0, 0, width, height);
+            }
+
+        // Get the font metrics only when the font changes
+        final Font font = this.getFont();
+        if ((this.metrics == null) || (font != this.metricsFont))
+            {
+            this.metrics = this.getFontMetrics(font);
+            this.metricsFont = font;
+            this.referenceFont = font.deriveFont(font.getSize2D() * 0.85f);
+            this.referenceMetrics = this.getFontMetrics(this.referenceFont);
+            }
+
+        // Use the same text antialiasing as the rest of the table
+        if ((MoneyCellRenderer.desktopHints != null) && (g instanceof Graphics2D))
+            ((Graphics2D) g).addRenderingHints(MoneyCellRenderer.desktopHints);
+
+        // Draw the amount
+        final int length = this.text.length - this.start;
+        final int padding = this.total ? this.metrics.charWidth(' ') * MoneyCellRenderer.TOTAL_PADDING : 0;
+        final int x = width - padding - this.metrics.charsWidth(this.text, this.start, length);
+        final int y = ((height - this.metrics.getHeight()) / 2) + this.metrics.getAscent();
+        g.setColor(this.getForeground());
+        g.setFont(font);
+        g.drawChars(this.text, this.start, length, x, y);
+
+        // Draw the budget of the year before at the left if there's room for it
+        if (this.showReference)
+            {
+            final int referenceLength = this.reference.length - this.referenceStart;
+            final int inset = this.referenceMetrics.charWidth(' ');
+            if (inset + this.referenceMetrics.charsWidth(this.reference, this.referenceStart, referenceLength) + inset < x)
+                {
+                g.setColor(this.getDimColor());
+                g.setFont(this.referenceFont);
+                g.drawChars(this.reference, this.referenceStart, referenceLength, inset, y);
+                }
+            }
+    }
+
+
+    /** 
+     * Get the color for the budget of the year before, half way between the
+     * text and background colors. The color is only worked out again when
+     * the cell colors change.
+     * 
+     * @return Color - The dimmed text color.
+     */
+    private Color getDimColor() {
+        final Color foreground = this.getForeground();
+        final Color background = this.getBackground();
+        if ((foreground != this.dimForeground) || (background != this.dimBackground))
+            {
+            this.dimForeground = foreground;
+            this.dimBackground = background;
+            this.dimColor = new Color((foreground.getRed() + background.getRed()) / 2, (foreground.getGreen() + background.getGreen()) / 2, (foreground.getBlue() + background.getBlue()) / 2);
+            }
+        return this.dimColor;
+    }
+
+
+    /** 
+     * Make sure a buffer is large enough for an amount in a currency.
+     * 
+     * @param buffer - The buffer.
+     * @param type - The currency.
+     * @return char[] - The buffer or a larger buffer if it was too small.
+     */
+    private static char[] fit(final char[] buffer, final CurrencyType type) {
+        final int needed = 40 + type.getDecimalPlaces() + type.getPrefix().length() + type.getSuffix().length();
+        return (buffer.length < needed) ? new char[needed] : buffer;
+    }
+
+
+    /** 
+     * Format an amount into the end of a buffer. The buffer must be large
+     * enough for the currency (see fit).
+     * 
+     * @param buffer - The buffer to format into.
+     * @param amount - The amount to format in the currency's smallest units.
+     * @param type - The currency of the amount.
+     * @return int - The start of the formatted amount in the buffer.
+     */
+    private int format(final char[] buffer, final long amount, final CurrencyType type) {
+        final String prefix = type.getPrefix();
+        final String suffix = type.getSuffix();
+        final int decimals = type.getDecimalPlaces();
+
+        // Build the text from right to left
+        int pos = buffer.length;
+        for (int i = suffix.length() - 1; i >= 0; i--)
+            buffer[--pos] = suffix.charAt(i);
+
+        // Digits after the decimal point
+        long value = amount;
+        for (int i = 0; i < decimals; i++)
+            {
+            buffer[--pos] = (char)('0' + Math.abs(value % 10));
+            value /= 10;
+            }
+        if (decimals > 0)
+            buffer[--pos] = this.decimalSeparator;
+
+        // Whole digits with grouping separators
+        int digits = 0;
+        do
+            {
+            if ((digits > 0) && ((digits % 3) == 0))
+                buffer[--pos] = this.groupingSeparator;
+            buffer[--pos] = (char)('0' + Math.abs(value % 10));
+            value /= 10;
+            digits++;
+            }
+        while (value != 0);
+
+        // Currency prefix and sign
+        for (int i = prefix.length() - 1; i >= 0; i--)
+            buffer[--pos] = prefix.charAt(i);
+        if (amount < 0)
+            buffer[--pos] = '-';
+
+        return pos;
+    }
+
+
+    /*
+     * The following methods are overridden as a performance measure to prune
+     * code paths that are not needed when painting table cells, the same as
+     * DefaultTableCellRenderer does.
+     */
+    @Override
+    public void invalidate() {}
+
+    @Override
+    public void validate() {}
+
+    @Override
+    public void revalidate() {}
+
+    @Override
+    public void repaint(final long tm, final int x, final int y, final int width, final int height) {}
+
+    @Override
+    public void repaint(final Rectangle r) {}
+
+    @Override
+    public void repaint() {}
+
+    @Override
+    protected void firePropertyChange(final String propertyName, final Object oldValue, final Object newValue) {}
+
+    @Override
+    public void firePropertyChange(final String propertyName, final boolean oldValue, final boolean newValue) {}
+}
@@ -34,34 +34,120 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import com.infinitekind.moneydance.model.AccountBook;
 import com.infinitekind.moneydance.model.Budget;
+import com.infinitekind.moneydance.model.BudgetItem;
+import com.infinitekind.moneydance.model.BudgetListener;
 import com.infinitekind.moneydance.model.PeriodType;
-import com.moneydance.apps.md.controller.FeatureModuleContext;
 
 
 /**
 * Create a list of budgets
-* This class creates a list of existing new style monthly budgets.
+* This class creates a list of existing new style monthly budgets. The list is
+* shared and is only built when it is first needed. It is rebuilt on the next
+* use after Moneydance reports that a budget was added, removed or changed.
 *
 * @author  Jerry Jones
 */
-public class MyBudgetList {
+public class MyBudgetList implements BudgetListener {
+	/**
+	 * The shared instance of the budget list
+	 */
+	private static MyBudgetList instance = null;
+
+	// The account book the budgets belong to
+	private final AccountBook book;
+
+	// Budgets by name
 	private final Map<String,Budget> mapBudgets = new HashMap<String,Budget>();
 
+	// Budgets by key
+	private final Map<String,Budget> mapKeys = new HashMap<String,Budget>();
+
+	// Sorted budget names
+	private String [] arrNames = new String[0];
+
+	// When true the list must be rebuilt before it is used
+	private boolean stale = true;
+
 	/** 
      * Constructor for the BudgetList.
 	 * 
-	 * @param context - The context for this feature module.
+	 * @param book - The account book to list the budgets for.
      */
-	public MyBudgetList(final FeatureModuleContext context) { 
+	private MyBudgetList(final AccountBook book) { 
+		// Save the account book for later
+		this.book = book;
+
+		// Listen for budget changes so we know when to rebuild the list
+		this.book.getBudgets().addListener(this);
+	}
+
+	/**
+	 * Get the shared budget list for an account book.
+	 * 
+	 * @param book - The account book in use.
+	 * @return MyBudgetList - The budget list for the account book.
+	 */
+	public static synchronized MyBudgetList getInstance(final AccountBook book) {
+		// Create a new list if there isn't one yet or the book changed
+		if ((MyBudgetList.instance == null) || (!book.equals(MyBudgetList.instance.book)))
+			{
+			// Stop listening to the old book
+			if (MyBudgetList.instance != null)
+				MyBudgetList.instance.book.getBudgets().removeListener(MyBudgetList.instance);
+
+			MyBudgetList.instance = new MyBudgetList(book);
+			}
+
+		return MyBudgetList.instance;
+	}
+
+	/**
+	 * Release the shared budget list when its account book is closed so that
+	 * it stops listening for budget changes and the book can be freed.
+	 */
+	public static synchronized void release() {
+		if (MyBudgetList.instance != null)
+			{
+			// Stop listening to the book
+			MyBudgetList.instance.book.getBudgets().removeListener(MyBudgetList.instance);
+			MyBudgetList.instance = null;
+			}
+	}
+
+	/**
+	 * Rebuild the list if a budget changed since it was last built.
+	 */
+	private synchronized void load() {
+		if (!this.stale)
+			return;
+
 		// Create the map of budgets by name and object - only load new style monthly budgets
-		final List<Budget> listBudgets = context.getCurrentAccountBook().getBudgets().getAllBudgets();
+		this.mapBudgets.clear();
+		this.mapKeys.clear();
+		final List<Budget> listBudgets = this.book.getBudgets().getAllBudgets();
 		for (final Budget objBud: listBudgets) {
 			if ((objBud.isNewStyle()) && (objBud.getPeriodType() == PeriodType.MONTH))
+				{
 				this.mapBudgets.put(objBud.getName(),objBud);
+				this.mapKeys.put(objBud.getKey(),objBud);
+				}
 		}
+
+		// Sort the names once
+		this.arrNames = this.mapBudgets.keySet().toArray(new String[0]);
+		Arrays.sort(this.arrNames);
+
+		this.stale = false;
+	}
+
+	/**
+	 * Mark the list to be rebuilt the next time it is used.
+	 */
+	private synchronized void invalidate() {
+		this.stale = true;
 	}
 
 	/**
@@ -69,7 +155,8 @@ public class MyBudgetList {
 	 * 
 	 * @return - The number of monthly budgets found.
 	 */
-	public int getBudgetCount() {
+	public synchronized int getBudgetCount() {
+		this.load();
 		return this.mapBudgets.size();
 	}
 
@@ -78,11 +165,9 @@ public class MyBudgetList {
 	 * 
 	 * @return String[] - Budget names array
 	 */
-	public String [] getBudgetNames () {
-		final Set<String> setNames = this.mapBudgets.keySet();
-		final String [] arrNames = setNames.toArray(new String[0]);
-		Arrays.sort(arrNames);
-		return arrNames;
+	public synchronized String [] getBudgetNames () {
+		this.load();
+		return this.arrNames.clone();
 	}
 
 	
@@ -92,11 +177,24 @@ public class MyBudgetList {
 	 * @param strName - The budget name to return
 	 * @return Budget - The budget object given the name or null if not found.
 	 */
-	public Budget getBudget(final String strName) {
+	public synchronized Budget getBudget(final String strName) {
+		this.load();
 		return ( this.mapBudgets.get(strName) );
 	}
 
 	
+	/** 
+	 * This method returns a budget object given the budget key passed to it.
+	 * 
+	 * @param strKey - The budget key to return
+	 * @return Budget - The budget object given the key or null if not found.
+	 */
+	public synchronized Budget getBudgetByKey(final String strKey) {
+		this.load();
+		return ( this.mapKeys.get(strKey) );
+	}
+
+	
 	/** 
 	 * This method returns a budget key value based on the budget name passed 
 	 * to it.
@@ -105,11 +203,40 @@ public class MyBudgetList {
 	 * @return String - The key for the given budget name or null if the budget
 	 * name was not found.
 	 */
-	public String getBudgetKey (final String strName) {
-		final Budget objBud = this.mapBudgets.get(strName);
+	public synchronized String getBudgetKey (final String strName) {
+		final Budget objBud = this.getBudget(strName);
 		if (objBud != null)
 			return objBud.getKey();
 		else
 			return null;
 	}
+
+	/*
+	 * BudgetListener overrides (see com.infinitekind.moneydance.model.BudgetListener)
+	 * A budget that is added, removed or changed (possibly renamed) invalidates
+	 * the list. Budget item changes do not affect the list.
+	 */
+	@Override
+	public void budgetAdded(final Budget budget) {
+		this.invalidate();
+	}
+
+	@Override
+	public void budgetRemoved(final Budget budget) {
+		this.invalidate();
+	}
+
+	@Override
+	public void budgetModified(final Budget budget) {
+		this.invalidate();
+	}
+
+	@Override
+	public void budgetItemAdded(final Budget budget, final BudgetItem item) {}
+
+	@Override
+	public void budgetItemRemoved(final Budget budget, final BudgetItem item) {}
+
+	@Override
+	public void budgetItemModified(final Budget budget, final BudgetItem item) {}
 }
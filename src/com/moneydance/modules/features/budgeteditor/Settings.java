@@ -50,7 +50,7 @@ public class Settings {
      * The settings we support
      */
     // Version number of the settings
-    private static int version = Constants.SETTINGS_VERSION_1;
+    private static int version = Constants.SETTINGS_VERSION_6;
 
     // The name of the budget to use
     private static String budgetName = "Budget";
@@ -58,6 +58,24 @@ public class Settings {
     // Use full names when true
     private static Boolean useCategoryCurrency = false;
 
+    // Store runs of equal months as a single budget item when true
+    private static Boolean compactStorage = false;
+
+    // Remove zero valued and orphaned budget items when saving when true
+    private static Boolean purgeOnSave = false;
+
+    // Keep the budget data loaded after the window is closed when true
+    private static Boolean keepLoaded = true;
+
+    // The first month shown in the table (1...12)
+    private static int firstMonth = 1;
+
+    // The number of months shown in the table
+    private static int monthCount = 12;
+
+    // Show the budget of the year before with each month
+    private static Boolean showReference = false;
+
     /**
      * Default constructor for the settings class.
      * 
@@ -86,9 +104,69 @@ public class Settings {
                     // Get the V1 parameters
                     Settings.getV1Params(rawSplit);
 
-                    // Upgrade to V2 parameters by setting the defaults
-                    Settings.version                = Constants.SETTINGS_VERSION_1;
-                    Settings.useCategoryCurrency    = false;
+                    // Upgrade to V6 parameters by setting the defaults
+                    Settings.version                = Constants.SETTINGS_VERSION_6;
+                    Settings.compactStorage         = false;
+                    Settings.purgeOnSave            = false;
+                    Settings.keepLoaded             = true;
+                    Settings.firstMonth             = 1;
+                    Settings.monthCount             = 12;
+                    Settings.showReference          = false;
+                    return;
+                    }
+                else if ((version == Constants.SETTINGS_VERSION_2) && (rawSplit.length == Constants.V2_NUM_MBR_SETTINGS))
+                    {
+                    // Get the V2 parameters
+                    Settings.getV2Params(rawSplit);
+
+                    // Upgrade to V6 parameters by setting the defaults
+                    Settings.version                = Constants.SETTINGS_VERSION_6;
+                    Settings.purgeOnSave            = false;
+                    Settings.keepLoaded             = true;
+                    Settings.firstMonth             = 1;
+                    Settings.monthCount             = 12;
+                    Settings.showReference          = false;
+                    return;
+                    }
+                else if ((version == Constants.SETTINGS_VERSION_3) && (rawSplit.length == Constants.V3_NUM_MBR_SETTINGS))
+                    {
+                    // Get the V3 parameters
+                    Settings.getV3Params(rawSplit);
+
+                    // Upgrade to V6 parameters by setting the defaults
+                    Settings.version                = Constants.SETTINGS_VERSION_6;
+                    Settings.keepLoaded             = true;
+                    Settings.firstMonth             = 1;
+                    Settings.monthCount             = 12;
+                    Settings.showReference          = false;
+                    return;
+                    }
+                else if ((version == Constants.SETTINGS_VERSION_4) && (rawSplit.length == Constants.V4_NUM_MBR_SETTINGS))
+                    {
+                    // Get the V4 parameters
+                    Settings.getV4Params(rawSplit);
+
+                    // Upgrade to V6 parameters by setting the defaults
+                    Settings.version                = Constants.SETTINGS_VERSION_6;
+                    Settings.firstMonth             = 1;
+                    Settings.monthCount             = 12;
+                    Settings.showReference          = false;
+                    return;
+                    }
+                else if ((version == Constants.SETTINGS_VERSION_5) && (rawSplit.length == Constants.V5_NUM_MBR_SETTINGS))
+                    {
+                    // Get the V5 parameters
+                    Settings.getV5Params(rawSplit);
+
+                    // Upgrade to V6 parameters by setting the defaults
+                    Settings.version                = Constants.SETTINGS_VERSION_6;
+                    Settings.showReference          = false;
+                    return;
+                    }
+                else if ((version == Constants.SETTINGS_VERSION_6) && (rawSplit.length == Constants.V6_NUM_MBR_SETTINGS))
+                    {
+                    // Get the V6 parameters
+                    Settings.getV6Params(rawSplit);
                     return;
                     }
                 // else, just go set the defaults
@@ -106,9 +184,15 @@ public class Settings {
             }
 
         // Otherwise, we'll use the defaults just to get going
-        Settings.version                = Constants.SETTINGS_VERSION_1;
+        Settings.version                = Constants.SETTINGS_VERSION_6;
         Settings.budgetName             = "Budget";
         Settings.useCategoryCurrency    = false;
+        Settings.compactStorage         = false;
+        Settings.purgeOnSave            = false;
+        Settings.keepLoaded             = true;
+        Settings.firstMonth             = 1;
+        Settings.monthCount             = 12;
+        Settings.showReference          = false;
     }
 
     /**
@@ -123,6 +207,64 @@ public class Settings {
  
     }
 
+    /**
+     * Method to retrieve the V2 parameters
+     * 
+     * @param rawSplit - The settings from the preferences split into an array
+     */
+    private static void getV2Params(String[] rawSplit) {
+        Settings.getV1Params(rawSplit);
+        Settings.version                = Constants.SETTINGS_VERSION_2;
+        Settings.compactStorage         = rawSplit[3].equalsIgnoreCase("true");
+    }
+
+    /**
+     * Method to retrieve the V3 parameters
+     * 
+     * @param rawSplit - The settings from the preferences split into an array
+     */
+    private static void getV3Params(String[] rawSplit) {
+        Settings.getV2Params(rawSplit);
+        Settings.version                = Constants.SETTINGS_VERSION_3;
+        Settings.purgeOnSave            = rawSplit[4].equalsIgnoreCase("true");
+    }
+
+    /**
+     * Method to retrieve the V4 parameters
+     * 
+     * @param rawSplit - The settings from the preferences split into an array
+     */
+    private static void getV4Params(String[] rawSplit) {
+        Settings.getV3Params(rawSplit);
+        Settings.version                = Constants.SETTINGS_VERSION_4;
+        Settings.keepLoaded             = rawSplit[5].equalsIgnoreCase("true");
+    }
+
+    /**
+     * Method to retrieve the V5 parameters
+     * 
+     * @param rawSplit - The settings from the preferences split into an array
+     */
+    private static void getV5Params(String[] rawSplit) {
+        Settings.getV4Params(rawSplit);
+        Settings.version                = Constants.SETTINGS_VERSION_5;
+        Settings.firstMonth             = Math.min(Math.max(Integer.parseInt(rawSplit[6]), 1), 12);
+        Settings.monthCount             = Integer.parseInt(rawSplit[7]);
+        if ((Settings.monthCount != 24) && (Settings.monthCount != 36))
+            Settings.monthCount = 12;
+    }
+
+    /**
+     * Method to retrieve the V6 parameters
+     * 
+     * @param rawSplit - The settings from the preferences split into an array
+     */
+    private static void getV6Params(String[] rawSplit) {
+        Settings.getV5Params(rawSplit);
+        Settings.version                = Constants.SETTINGS_VERSION_6;
+        Settings.showReference          = rawSplit[8].equalsIgnoreCase("true");
+    }
+
     /**
      * Get the Instance of this class There should only ever be one instance of
      * this class and other classes can use this static method to retrieve the
@@ -166,7 +308,7 @@ public class Settings {
      * Save the settings 
      */
     public void saveSettings() {
-        final String settings = Settings.version+","+Settings.budgetName+","+Settings.useCategoryCurrency.toString();
+        final String settings = Settings.version+","+Settings.budgetName+","+Settings.useCategoryCurrency.toString()+","+Settings.compactStorage.toString()+","+Settings.purgeOnSave.toString()+","+Settings.keepLoaded.toString()+","+Settings.firstMonth+","+Settings.monthCount+","+Settings.showReference.toString();
         Settings.book.getRootAccount().setPreference(Constants.MBE_SETTINGS, settings);
     }
     
@@ -175,7 +317,7 @@ public class Settings {
      */
     @Override
     public String toString() {
-        return "Settings [version=" + Settings.version + ", budgetName=" + Settings.budgetName + ", useCategoryCurrency=" + Settings.useCategoryCurrency + "]";
+        return "Settings [version=" + Settings.version + ", budgetName=" + Settings.budgetName + ", useCategoryCurrency=" + Settings.useCategoryCurrency + ", compactStorage=" + Settings.compactStorage + ", purgeOnSave=" + Settings.purgeOnSave + ", keepLoaded=" + Settings.keepLoaded + ", firstMonth=" + Settings.firstMonth + ", monthCount=" + Settings.monthCount + ", showReference=" + Settings.showReference + "]";
     }
 
     /**
@@ -206,6 +348,90 @@ public class Settings {
         Settings.useCategoryCurrency = useCategoryCurrency;
     }
 
+    /**
+     * @return the compactStorage
+     */
+    public Boolean getCompactStorage() {
+        return Settings.compactStorage;
+    }
+
+    /**
+     * @param compactStorage the compactStorage to set
+     */
+    public void setCompactStorage(Boolean compactStorage) {
+        Settings.compactStorage = compactStorage;
+    }
+
+    /**
+     * @return the purgeOnSave
+     */
+    public Boolean getPurgeOnSave() {
+        return Settings.purgeOnSave;
+    }
+
+    /**
+     * @param purgeOnSave the purgeOnSave to set
+     */
+    public void setPurgeOnSave(Boolean purgeOnSave) {
+        Settings.purgeOnSave = purgeOnSave;
+    }
+
+    /**
+     * @return the keepLoaded
+     */
+    public Boolean getKeepLoaded() {
+        return Settings.keepLoaded;
+    }
+
+    /**
+     * @param keepLoaded the keepLoaded to set
+     */
+    public void setKeepLoaded(Boolean keepLoaded) {
+        Settings.keepLoaded = keepLoaded;
+    }
+
+    /**
+     * @return the firstMonth
+     */
+    public int getFirstMonth() {
+        return Settings.firstMonth;
+    }
+
+    /**
+     * @param firstMonth the firstMonth to set
+     */
+    public void setFirstMonth(int firstMonth) {
+        Settings.firstMonth = firstMonth;
+    }
+
+    /**
+     * @return the monthCount
+     */
+    public int getMonthCount() {
+        return Settings.monthCount;
+    }
+
+    /**
+     * @param monthCount the monthCount to set
+     */
+    public void setMonthCount(int monthCount) {
+        Settings.monthCount = monthCount;
+    }
+
+    /**
+     * @return the showReference
+     */
+    public Boolean getShowReference() {
+        return Settings.showReference;
+    }
+
+    /**
+     * @param showReference the showReference to set
+     */
+    public void setShowReference(Boolean showReference) {
+        Settings.showReference = showReference;
+    }
+
     /**
      * @return the settings version
      */
@@ -32,25 +32,35 @@ package com.moneydance.modules.features.budgeteditor;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.Iterator;
 
+import javax.swing.AbstractAction;
 import javax.swing.JComponent;
-import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
+import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
-import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
@@ -84,8 +94,47 @@ public class Table extends EditingTable {
 	// The table instance for the event handles to use
 	private final Table table;
 
-	// Popup menu
-	private JPopupMenu 	popMenu;
+	// Row styles - editable category, roll-up total and the overall total
+	private static final byte ROW_CATEGORY = 0;
+	private static final byte ROW_TOTAL = 1;
+	private static final byte ROW_OVERALL = 2;
+
+	// The style of each row, null until the table is first rendered
+	private byte[] rowStyles;
+
+	// Keyboard navigation directions
+	static final int MOVE_NEXT = 0;
+	static final int MOVE_PREVIOUS = 1;
+	static final int MOVE_RIGHT = 2;
+	static final int MOVE_LEFT = 3;
+	static final int MOVE_DOWN = 4;
+	static final int MOVE_UP = 5;
+
+	// The first editable row at or after each row and the last editable row at or
+	// before each row, -1 if there isn't one. Built along with the row styles.
+	private int[] nextEditableRow;
+	private int[] prevEditableRow;
+
+	// Text colors of the totals for the current theme
+	private final Color totalForeground;
+	private final Color overallForeground;
+
+	// Time taken and bytes allocated preparing the cells of one paint when debugging
+	private long renderNanos = 0;
+	private long renderBytes = 0;
+	private int renderCount = 0;
+
+	// Preferred width of the month and totals columns
+	private static final int MONTH_WIDTH = 100;
+
+	// Popup menus for each kind of column, built when first needed. Menus for
+	// months that aren't a calendar year follow the calendar year menus.
+	private static final int MENU_MONTH = 0;
+	private static final int MENU_FIRST = 1;
+	private static final int MENU_LAST = 2;
+	private static final int MENU_TOTALS = 3;
+	private static final int MENU_PERIOD = 4;
+	private final JPopupMenu[] popMenus = new JPopupMenu[8];
 	private int popRow = -1;
 	private int popColumn = -1;
 
@@ -121,24 +170,28 @@ public class Table extends EditingTable {
 		// Save this table instance for the event handler
 		this.table = this;
 
-		// Set selection parameters
-		this.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-		this.setCellSelectionEnabled(false);
+		// Get the text colors for totals once rather than for each cell
+		if (this.colors.isDarkTheme())
+			{
+			this.overallForeground = new Color(33, 144, 255);	// Medium blue
+			this.totalForeground = new Color(0, 204, 204);		// Dark Cyan
+			}
+		else
+			{
+			this.overallForeground = this.colors.reportBlueFG.darker();
+			this.totalForeground = this.colors.reportBlueFG;
+			}
+
+		// Set selection parameters, a block of cells can be selected to change them all at once
+		this.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		this.setCellSelectionEnabled(true);
 
 		// Some themes have too small a row height so try to fix that here
 		// Also, this makes the overall table look less squished.
 		this.setRowHeight(30); 
 
 		// Set column editor and renderer
-        for (int i = 1; i < this.getColumnCount(); i++ ) 
-			{
-            final TableColumn colSelect = this.getColumnModel().getColumn(i);
-			DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer();
-			cellRenderer.setHorizontalAlignment(JLabel.RIGHT);
-			colSelect.setCellRenderer(cellRenderer);
-			if (i != this.getColumnCount() - 1) // Don't set for totals column
-				colSelect.setCellEditor(new CurrencyTableCellEditor(this, new JTextField()));
-        	}
+		this.configureColumns();
 		
 		// Only allow tabbing, etc. to editable cells
 		new EditableCellFocusAction(this.table, KeyStroke.getKeyStroke("TAB"));
@@ -148,16 +201,81 @@ public class Table extends EditingTable {
 		new EditableCellFocusAction(this.table, KeyStroke.getKeyStroke("UP"));
 		new EditableCellFocusAction(this.table, KeyStroke.getKeyStroke("DOWN"));
 
+		// Paste blocks of values copied from a spreadsheet
+		this.getActionMap().put("paste", new AbstractAction() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				Table.this.pasteFromClipboard();
+			}
+		});
+
+		// Copy the selected cells as text a spreadsheet can read
+		this.getActionMap().put("copy", new AbstractAction() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				Table.this.copyToClipboard(false);
+			}
+		});
+
 		// Add a mouse listener to show the pop-up menu
 		this.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseReleased(final MouseEvent me) {
 				Table.this.doShowPopup(me);
 			}
+
+			@Override
+			public void mouseClicked(final MouseEvent me) {
+				// Clicking the name of a category with children hides or shows the children
+				if (SwingUtilities.isLeftMouseButton(me))
+					{
+					final int row = Table.this.rowAtPoint(me.getPoint());
+					if ((row != -1) && (Table.this.columnAtPoint(me.getPoint()) == 0) && (Table.this.model.isCollapsible(row)))
+						Table.this.model.toggleCollapsed(row);
+					}
+			}
 		});	
 	}
 
 
+	/** 
+	 * Create the columns again when the months shown change.
+	 */
+	@Override
+	public void createDefaultColumnsFromModel() {
+		super.createDefaultColumnsFromModel();
+
+		// The constructor sets up the first columns once the table is ready
+		if (this.model != null)
+			this.configureColumns();
+	}
+
+
+	/** 
+	 * Set the editor, renderer and width of each column. When more than 12
+	 * months are shown the columns keep their width and the table scrolls
+	 * sideways, otherwise the columns are sized to fit the window.
+	 */
+	private void configureColumns() {
+		final int totals = this.getColumnCount() - 1;
+        for (int i = 1; i < this.getColumnCount(); i++ ) 
+			{
+            final TableColumn colSelect = this.getColumnModel().getColumn(i);
+			colSelect.setCellRenderer(new MoneyCellRenderer(i == totals));
+			if (i != totals) // Don't set for totals column
+				colSelect.setCellEditor(new CurrencyTableCellEditor(this, new JTextField()));
+			colSelect.setPreferredWidth(Table.MONTH_WIDTH);
+        	}
+
+		// Set the minimum width of the category column
+		this.getColumnModel().getColumn(0).setMinWidth(240);
+		this.getColumnModel().getColumn(0).setPreferredWidth(240);
+
+		// Scroll sideways rather than squeeze more than a year of months into the window
+		this.setAutoResizeMode((this.model.getMonthCount() > 12) ? JTable.AUTO_RESIZE_OFF : JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
+	}
+
+
 	/** 
 	 * Prepare the renderer for the cell at the specified row and column.
 	 * 
@@ -168,6 +286,63 @@ public class Table extends EditingTable {
 	 */
 	@Override
 	public Component prepareRenderer(final TableCellRenderer renderer, final int row, final int column) 
+	{
+		if (!Constants.DEBUG)
+			return this.prepareCell(renderer, row, column);
+
+		// Measure the renderer path, the totals are logged once the table has been painted
+		final long bytes = Table.getAllocatedBytes();
+		final long start = System.nanoTime();
+		final Component c = this.prepareCell(renderer, row, column);
+		this.renderNanos += System.nanoTime() - start;
+		this.renderBytes += Table.getAllocatedBytes() - bytes;
+		this.renderCount++;
+		return c;
+	}
+
+
+	/** 
+	 * Paint the table and, when debugging, log how long preparing the cells
+	 * took and how much it allocated.
+	 * 
+	 * @param g - The graphics context to paint with.
+	 */
+	@Override
+	protected void paintComponent(final Graphics g) {
+		super.paintComponent(g);
+
+		if ((Constants.DEBUG) && (this.renderCount > 0))
+			{
+			System.err.println("Monthly Budget Editor: Prepared "+this.renderCount+" cells in "+(this.renderNanos / 1000)+" us, "
+				+(this.renderNanos / this.renderCount)+" ns and "+(this.renderBytes / this.renderCount)+" bytes allocated per cell.");
+			this.renderNanos = 0;
+			this.renderBytes = 0;
+			this.renderCount = 0;
+			}
+	}
+
+
+	/** 
+	 * @return long - The bytes allocated by this thread so far or 0 if the JVM can't tell.
+	 */
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		return 0;
+	}
+
+
+	/** 
+	 * Prepare the renderer for a cell, coloring it for its row, value and
+	 * selection.
+	 * 
+	 * @param renderer - The table cell renderer object.
+	 * @param row - The row to prepare.
+	 * @param column - The column to prepare.
+	 * @return Component - The component being rendered.
+	 */
+	private Component prepareCell(final TableCellRenderer renderer, final int row, final int column) 
 	{
 		final Component c = super.prepareRenderer(renderer, row, column);
 
@@ -179,40 +354,23 @@ public class Table extends EditingTable {
 
 		// Set text color of totals. Other than the category name in column 0, any other 
 		// cell could potentially be a total so we color it specially.
-		if ((!this.model.isCellEditable(row, column)) && ((column > 0) || (this.model.getBudgetCategoryItem(row).hasChildren())))
-			{
-			if (row == 0)
-				{
-				if (this.colors.isDarkTheme())
-            		c.setForeground(new Color(33, 144, 255));	// Medium blue
-				else 
-					c.setForeground(this.colors.reportBlueFG.darker());
-				}
-			else
-				{
-				if (this.colors.isDarkTheme())
-					c.setForeground(new Color(0, 204, 204));	// Dark Cyan
-				else 
-					c.setForeground(this.colors.reportBlueFG);
-				}
-			}
+		final byte style = this.getRowStyle(row);
+		if (style == Table.ROW_OVERALL)
+			c.setForeground(this.overallForeground);
+		else if ((style == Table.ROW_TOTAL) || (column == this.model.getMonthCount() + 1))
+			c.setForeground(this.totalForeground);
+		else if ((column > 0) && (this.model.isNegativeAt(row, column)))
+			// Moneydance doesn't really support negative budgets for some odd reason so highlight those values red
+			c.setForeground(Color.RED);
 		else
-			{
 			// Ensures proper foreground color on all themes
 			c.setForeground(this.colors.defaultTextForeground);
-			}
-		
-		// Moneydance doesn't really support negative budgets for some odd reason so highlight those values red
-		final Object value = this.table.getValueAt(row, column);
-		if (value instanceof String)
-			{
-			if (((String)value).contains("-") && (this.model.isCellEditable(row, column)))
-				c.setForeground(Color.RED);
-			}
 
-		// Highlight a right-clicked cell
+		// Highlight a right-clicked cell and the cells selected when there's more than one
 		if ((row == this.popRow) && (column == this.popColumn))
 			c.setBackground(this.colors.selectedRowGradient1);
+		else if ((column > 0) && (this.isCellSelected(row, column)) && ((this.getSelectedRowCount() > 1) || (this.getSelectedColumnCount() > 1)))
+			c.setBackground(this.colors.selectedRowGradient1);
 
 		// Remove border from the cells. The editor will still set the selection border. This makes uneditable cells also appear unselectable.
 		((JComponent) c).setBorder(null);
@@ -222,13 +380,146 @@ public class Table extends EditingTable {
 	}
 
 
+	/** 
+	 * Get the style of a row, working out the styles of all rows the first time
+	 * the table is rendered after the categories are loaded.
+	 * 
+	 * @param row - The row to get the style for.
+	 * @return byte - ROW_CATEGORY, ROW_TOTAL or ROW_OVERALL.
+	 */
+	private byte getRowStyle(final int row) {
+		this.buildRowIndex();
+		return this.rowStyles[row];
+	}
+
+
+	/** 
+	 * Work out the style of each row and where the editable rows are if the
+	 * categories have changed since they were last worked out.
+	 */
+	private void buildRowIndex() {
+		final int count = this.model.getRowCount();
+		if ((this.rowStyles != null) && (this.rowStyles.length == count))
+			return;
+
+		// Get the style of each row
+		this.rowStyles = new byte[count];
+		for (int index = 0; index < count; index++)
+			{
+			final BudgetCategoryItem item = this.model.getBudgetCategoryItem(index);
+			if (item.getParentRow() == -1)
+				this.rowStyles[index] = Table.ROW_OVERALL;
+			else if (item.hasChildren())
+				this.rowStyles[index] = Table.ROW_TOTAL;
+			else
+				this.rowStyles[index] = Table.ROW_CATEGORY;
+			}
+
+		// Find the nearest editable rows in each direction
+		this.nextEditableRow = new int[count + 1];
+		this.prevEditableRow = new int[count];
+		this.nextEditableRow[count] = -1;
+		for (int i = count - 1; i >= 0; i--)
+			this.nextEditableRow[i] = (this.rowStyles[i] == Table.ROW_CATEGORY) ? i : this.nextEditableRow[i + 1];
+		for (int i = 0; i < count; i++)
+			this.prevEditableRow[i] = (this.rowStyles[i] == Table.ROW_CATEGORY) ? i : ((i > 0) ? this.prevEditableRow[i - 1] : -1);
+	}
+
+
+	/** 
+	 * Find the editable cell to move to from a cell when a navigation key is
+	 * pressed. Tab and Shift-Tab move across the months and wrap to the next or
+	 * previous editable row and around the table. The arrow keys move within
+	 * the row or column only.
+	 * 
+	 * @param row - The selected row or -1 if there isn't one.
+	 * @param column - The selected column or -1 if there isn't one.
+	 * @param direction - The direction to move, one of the MOVE_ constants.
+	 * @return Point - The cell to move to (x is the column, y is the row) or
+	 * null if the selection shouldn't move.
+	 */
+	Point findEditableCell(final int row, final int column, final int direction) {
+		this.buildRowIndex();
+		final int count = this.rowStyles.length;
+		if (count == 0)
+			return null;
+
+		// The editable columns are the months
+		final int first = 1;
+		final int last = this.model.getMonthCount();
+		final boolean editableRow = (row >= 0) && (row < count) && (this.rowStyles[row] == Table.ROW_CATEGORY);
+		final boolean monthColumn = (column >= first) && (column <= last);
+
+		switch (direction)
+			{
+			case MOVE_RIGHT:
+				return ((editableRow) && (column < last)) ? new Point(Math.max(column + 1, first), row) : null;
+
+			case MOVE_LEFT:
+				return ((editableRow) && (column > first)) ? new Point(Math.min(column - 1, last), row) : null;
+
+			case MOVE_DOWN:
+				{
+				final int next = ((monthColumn) && (row + 1 < count)) ? this.nextEditableRow[Math.max(row + 1, 0)] : -1;
+				return (next != -1) ? new Point(column, next) : null;
+				}
+
+			case MOVE_UP:
+				{
+				final int prev = ((monthColumn) && (row > 0)) ? this.prevEditableRow[Math.min(row - 1, count - 1)] : -1;
+				return (prev != -1) ? new Point(column, prev) : null;
+				}
+
+			case MOVE_NEXT:
+				{
+				if ((editableRow) && (column < last))
+					return new Point(Math.max(column + 1, first), row);
+
+				// Go to the first month of the next editable row, wrapping to the top
+				int next = ((row + 1 >= 0) && (row + 1 < count)) ? this.nextEditableRow[row + 1] : -1;
+				if (next == -1)
+					next = this.nextEditableRow[0];
+				return (next != -1) ? new Point(first, next) : null;
+				}
+
+			case MOVE_PREVIOUS:
+				{
+				if ((editableRow) && (column > first))
+					return new Point(Math.min(column - 1, last), row);
+
+				// Go to the last month of the previous editable row, wrapping to the bottom
+				int prev = ((row > 0) && (row - 1 < count)) ? this.prevEditableRow[row - 1] : -1;
+				if (prev == -1)
+					prev = this.prevEditableRow[count - 1];
+				return (prev != -1) ? new Point(last, prev) : null;
+				}
+
+			default:
+				return null;
+			}
+	}
+
+
+	/** 
+	 * Forget the row styles when the categories may have changed.
+	 * 
+	 * @param e - The event describing the change to the table model.
+	 */
+	@Override
+	public void tableChanged(final TableModelEvent e) {
+		if ((e == null) || (e.getType() != TableModelEvent.UPDATE) || (e.getFirstRow() == TableModelEvent.HEADER_ROW) || (e.getLastRow() == Integer.MAX_VALUE))
+			this.rowStyles = null;
+		super.tableChanged(e);
+	}
+
+
 	/**
 	 * Method called by the budget editor window from the Initialize Budget button
 	 * to initialize the selected budget and year with a prior year's budget.
 	 */
 	public void copyPriorBudget() {
 		// Get the list of available budgets
-		final MyBudgetList budgetList = new MyBudgetList(this.context);
+		final MyBudgetList budgetList = MyBudgetList.getInstance(this.context.getCurrentAccountBook());
         if (budgetList.getBudgetCount() == 0)
             {
             // Display an error message - No budgets exist!
@@ -250,6 +541,8 @@ public class Table extends EditingTable {
         strNames[this.window.getBudgetIndex()]); 	// Initial choice
 		
 		// Get the Budget object for the budget selected
+		if (budgetName == null)
+			return;
 		final Budget budget = budgetList.getBudget(budgetName);
 
 		// Get our current budget categories list
@@ -258,58 +551,84 @@ public class Table extends EditingTable {
 		// Get the BudgetItemList for the prior year
 		final BudgetItemList priorBudgetItemList = budget.getItemList();
 
-		// Iterate through all accounts to find prior year's budget information
-        for (final Iterator<Account> iter = AccountUtil.getAccountIterator(this.context.getCurrentAccountBook()); iter.hasNext(); ) 
-            {
-            // Get the account 
-            final Account acct = iter.next();
+		// Change all of the values at once so the totals are worked out and shown once
+		this.model.beginBatch();
+		try
+			{
+			// Iterate through all accounts to find prior year's budget information
+			for (final Iterator<Account> iter = AccountUtil.getAccountIterator(this.context.getCurrentAccountBook()); iter.hasNext(); ) 
+				{
+				// Get the account 
+				final Account acct = iter.next();
 
-			// Get the type of this account
-			final AccountType acctType = acct.getAccountType();
+				// Get the type of this account
+				final AccountType acctType = acct.getAccountType();
 
-			// Is the account active
-			if ((!acct.getAccountOrParentIsInactive()) && (!acct.getHideOnHomePage()))
-				{
-				if ((acctType == Account.AccountType.INCOME) || (acctType == Account.AccountType.EXPENSE))
+				// Is the account active
+				if ((!acct.getAccountOrParentIsInactive()) && (!acct.getHideOnHomePage()))
 					{
-					// Get the BudgetCategoryIem by the key (full name)
-					final BudgetCategoryItem item = budgetCategoriesList.getCategoryItem(acct.getUUID());   
-					if (item != null)
+					if ((acctType == Account.AccountType.INCOME) || (acctType == Account.AccountType.EXPENSE))
 						{
-						// If this is not a roll-up category then we need to get the current budget values for this category
-						if (!item.hasChildren())
+						// Get the BudgetCategoryIem by the key (full name)
+						final BudgetCategoryItem item = budgetCategoriesList.getCategoryItem(acct.getUUID());   
+						if (item != null)
 							{
-							for (int month = 1; month <= 12; month++)
+							// If this is not a roll-up category then we need to get the current budget values for this category
+							if (!item.hasChildren())
 								{
-								Long value;
+								// Each month shown is copied from the same month a year earlier
+								for (int column = 1; column <= this.model.getMonthCount(); column++)
+									{
+									long value;
 
-								// Find existing budget values for each month
-								final BudgetItem i = priorBudgetItemList.getBudgetItemForCategory(acct, new BudgetPeriod(DateUtil.getDate(this.model.getBudgetYear() - 1, month, 1), PeriodType.MONTH));
-								if (i != null)
-									value = i.getAmount();
-								else
-									value = 0l;
+									// Find existing budget values for each month
+									final BudgetItem i = priorBudgetItemList.getBudgetItemForCategory(acct, new BudgetPeriod(DateUtil.getDate(this.model.getYearAt(column) - 1, this.model.getMonthAt(column), 1), PeriodType.MONTH));
+									if (i != null)
+										value = i.getAmount();
+									else
+										value = 0l;
 
-								// Save the new value if it changed the old value
-								if (item.getBudgetValueForMonth(month) != value)
-									{
-									// Save the new value
-									item.setBudgetValueForMonth(this.model, budgetCategoriesList, month, value, acctType); 
-						
-									// Mark this cell as changed so we know what to update
-									item.setDataChangedForMonth(month, true);
-						
-									// Set the global data changed flag as well
-									this.window.setDataChanged(true);
+									// Save the new value, it's marked as changed and journaled if it changed the old value
+									this.model.setBudgetValueAt(item, column, value);
 									}
 								}
 							}
+						else
+							System.err.println("ERROR: "+acct.getFullAccountName()+" not found in categories list.");
 						}
-					else
-						System.err.println("ERROR: "+acct.getFullAccountName()+" not found in categories list.");
 					}
 				}
 			}
+		finally
+			{
+			// Redisplay the copied values
+			this.model.endBatch();
+			}
+	}
+
+
+	/** 
+	 * Get the actual spending for a category in the month shown in a column.
+	 * 
+	 * @param acct - The account (category) to get the spending for.
+	 * @param column - A month column [1...month count].
+	 * @return long - The actual spending for the month.
+	 */
+	private long getActualsAt(final Account acct, final int column) {
+		return this.getActuals(acct, this.model.getYearAt(column))[this.model.getMonthAt(column)];
+	}
+
+
+	/** 
+	 * Get the actual spending totals by month for a category and year.
+	 * 
+	 * @param acct - The account (category) to get the totals for.
+	 * @param year - The year to total (YYYY).
+	 * @return long[] - The totals array which must not be modified.
+	 * totals[1]...totals[12] are the totals by month.
+	 */
+	private long[] getActuals(final Account acct, final int year) {
+		return this.window.getActuals().getTotals(acct, year);
 	}
 
 
@@ -318,36 +637,43 @@ public class Table extends EditingTable {
 	 * to initialize the selected budget and year with a prior year's actuals.
 	 */	
 	public void copyPriorActuals() {
-		// iterate through all rows
-		for (int row = 0; row < this.model.getRowCount(); row++) 
+		// Change all of the values at once so the totals are worked out and shown once
+		this.model.beginBatch();
+		try
 			{
-			// Get the budget category item
-			final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
-			if (item != null)
+			// iterate through all categories including any not shown by the search
+			final BudgetCategoriesList budgetCategoriesList = this.model.getBudgetCategoriesList();
+			for (int index = 0; index < budgetCategoriesList.getCategoryCount(); index++) 
 				{
-				// Get actual spending by month for last year 
-				if (!item.hasChildren())
+				// Get the budget category item
+				final BudgetCategoryItem item = budgetCategoriesList.getCategoryItemByIndex(index);
+				if (item != null)
 					{
-					// Retrieve the transaction totals for this account from last year
-					final TransactionTotals actualSpending = new TransactionTotals(this.context, item.getAccount(), this.model.getBudgetYear() - 1, 1, 12);
-
-					// Set each months budgets equal to actual spending for last year and the same month
-					for (int i = 1; i <= 12; i++)
+					// Get actual spending by month for the year before each month shown
+					if (!item.hasChildren())
 						{
-						// Get the actual spending
-						Long v = actualSpending.getTotals()[i];
+						// Set each months budgets equal to actual spending for the same month a year earlier
+						for (int column = 1; column <= this.model.getMonthCount(); column++)
+							{
+							// Get the actual spending
+							long v = this.getActuals(item.getAccount(), this.model.getYearAt(column) - 1)[this.model.getMonthAt(column)];
 
-						// If this is an income category then the sign has to be changed
-						if (item.getCategoryType() == Account.AccountType.INCOME)
-						v = v * -1;
+							// If this is an income category then the sign has to be changed
+							if (item.getCategoryType() == Account.AccountType.INCOME)
+							v = v * -1;
 
-						// Save the new value
-						this.model.setValueAt(v, row, i);
+							// Save the new value
+							this.model.setBudgetValueAt(item, column, v);
+							}
 						}
 					}
+				else
+					System.err.println("ERROR: Item is null in copyPriorActuals.");
 				}
-			else
-				System.err.println("ERROR: Item is null in copyPriorActuals.");
+			}
+		finally
+			{
+			this.model.endBatch();
 			}
 	}
 
@@ -360,17 +686,14 @@ public class Table extends EditingTable {
 	 * @param me - The mouse event that triggered this method.
 	 */
 	public void doShowPopup(final MouseEvent me) {
-		// Create new popup menu
-		this.popMenu = new JPopupMenu();
-
 		// is this event a popup trigger?
-		if (this.popMenu.isPopupTrigger(me))
+		if (me.isPopupTrigger())
 			{
 			final Point p = me.getPoint();
 			final int row = this.rowAtPoint(p);
 			final int column = this.columnAtPoint(p);
 
-			this.showPopup(this.popMenu, row, column, me.getX(), me.getY());
+			this.showPopup(row, column, me.getX(), me.getY());
 			}
 	}
 
@@ -379,87 +702,138 @@ public class Table extends EditingTable {
 	 * This method is called from CurrencyTableCellEditor when a cell is right
 	 * clicked while in edit mode to bring up the pop-up menu.
 	 * 
-	 * @param popMenu - The popup menu object created by the cell editor.
 	 * @param row - The row where the cell was right clicked.
 	 * @param column - The column where the cell was right clicked.
 	 */
-	public void doShowPopup(final JPopupMenu popMenu, final int row, final int column) {
+	public void doShowPopup(final int row, final int column) {
 		// Since the user clicked on the editor for this cell we need to calculate a good place for the popup
 		// to be placed. We'll set the location to the mid point of the selected cell.
 		final Rectangle r = this.table.getCellRect(row, column, false);
-		this.showPopup(popMenu, row, column, r.x+((r.width * 3) / 4), r.y+(r.height / 2));
+		this.showPopup(row, column, r.x+((r.width * 3) / 4), r.y+(r.height / 2));
 	}
 
 
 	/** 
 	 * This method shows the pop-up menu when brought up by right clicking on an
-	 * editable cell.
+	 * editable cell. The menu items work on the months shown, which are the
+	 * months of the budget year when a calendar year is shown.
 	 * 
-	 * @param popMenu - The popup menu object previously created.
 	 * @param row - The row where the cell was right clicked.
 	 * @param column - The column where the cell was right clicked.
 	 * @param x - The x location where the mouse was clicked.
 	 * @param y - The y location where the mouse was clicked.
 	 */
-   	public void showPopup(final JPopupMenu popMenu, final int row, final int column, final int x, final int y) {
+   	public void showPopup(final int row, final int column, final int x, final int y) {
 		// Only process editable cells
-		if ((column > 0) && (!this.model.getBudgetCategoryItem(row).hasChildren())) 
+		if ((row >= 0) && (column > 0) && (this.getRowStyle(row) == Table.ROW_CATEGORY)) 
 			{
 			// Stop editing in case a different cell was in edit mode
 			final TableCellEditor editor = this.table.cellEditor;
 			if (editor != null)
 				editor.stopCellEditing();
 				
-			// Select the cell where the mouse was clicked
-			this.table.changeSelection(row, column, false, false);
+			// Select the cell where the mouse was clicked unless it's part of the cells already selected
+			if (!this.table.isCellSelected(row, column))
+				this.table.changeSelection(row, column, false, false);
 
 			// Save the right clicked cell so that we can highlight it 
 			this.popRow = row;
 			this.popColumn = column;
 
+			// Total the actual spending of the years shown while the user picks an item so
+			// that the items that use it apply straight away
+			for (int year = this.model.getYearAt(1); year <= this.model.getYearAt(this.model.getMonthCount()); year++)
+				this.window.getActuals().prefetch(year);
+
+			// Show the menu for the kind of column clicked
+			this.getPopupMenu(column).show(this.table, x, y);
+			}
+	}
+
+
+	/** 
+	 * Get the pop-up menu for a column. The items depend only on whether the
+	 * column is the first month shown, the last month shown, another month or
+	 * the totals, and on whether a calendar year is shown, so one menu is built
+	 * for each kind of column the first time it's needed and reused.
+	 * 
+	 * @param column - The column that was right clicked.
+	 * @return JPopupMenu - The menu for the column.
+	 */
+	private JPopupMenu getPopupMenu(final int column) {
+		int kind;
+		if (column > this.model.getMonthCount())
+			kind = Table.MENU_TOTALS;
+		else if (column == 1)
+			kind = Table.MENU_FIRST;
+		else if (column == this.model.getMonthCount())
+			kind = Table.MENU_LAST;
+		else
+			kind = Table.MENU_MONTH;
+
+		// The items name the year when a calendar year is shown and the months shown otherwise
+		final boolean calendar = this.model.isCalendarYear();
+		if (!calendar)
+			kind += Table.MENU_PERIOD;
+
+		if (this.popMenus[kind] == null)
+			{
+			final JPopupMenu popMenu = new JPopupMenu();
+
 			// Set up the appropriate pop-up menu items for the cell clicked
-			if (column == 13) // Totals
+			if ((kind % Table.MENU_PERIOD) == Table.MENU_TOTALS) // Totals
 				{
-				this.addPopupMenuItem(popMenu, "menuItemDistributeTotal", "Distribute the total across all months", null, this.popListener);
-				this.addPopupMenuItem(popMenu, "menuItemSetToActuals", "Set all months to actual spending", null, this.popListener);
+				this.addPopupMenuItem(popMenu, "menuItemDistributeTotal", calendar ? "Distribute the total across all months" : "Distribute the total across the months shown", null, this.popListener);
+				this.addPopupMenuItem(popMenu, "menuItemSetToActuals", calendar ? "Set all months to actual spending" : "Set the months shown to actual spending", null, this.popListener);
+				popMenu.addSeparator();
+				this.addPopupMenuItem(popMenu, "menuItemCopyAll", "Copy the whole budget", null, this.popListener);
 				}
 			else
 				{
 				// Enable appropriate menu items based on the month 
-				if (column != 1) // There is no previous period in January
+				if ((kind % Table.MENU_PERIOD) != Table.MENU_FIRST) // There is no previous period in the first month shown
 					this.addPopupMenuItem(popMenu, "menuItemPrevious", "Apply previous period's budget", null, this.popListener);
-				if (column != 12) // Doesn't make sense in December
-					this.addPopupMenuItem(popMenu, "menuItemCopytoEOY", "Apply selected cell to end of year", null, this.popListener);
-				this.addPopupMenuItem(popMenu, "menuItemCopytoAll", "Apply selected cell to entire year", null, this.popListener);
+				if ((kind % Table.MENU_PERIOD) != Table.MENU_LAST) // Doesn't make sense in the last month shown
+					this.addPopupMenuItem(popMenu, "menuItemCopytoEOY", calendar ? "Apply selected cell to end of year" : "Apply selected cell to the last month shown", null, this.popListener);
+				this.addPopupMenuItem(popMenu, "menuItemCopytoAll", calendar ? "Apply selected cell to entire year" : "Apply selected cell to all months shown", null, this.popListener);
 				popMenu.addSeparator();
 				this.addPopupMenuItem(popMenu, "menuItemSettoActualSpend", "Set budget equal to actual spending for the month", null, this.popListener);
-				if (column != 1) // There is no prior item in January
+				if ((kind % Table.MENU_PERIOD) != Table.MENU_FIRST) // There is no prior item in the first month shown
 					{
 					this.addPopupMenuItem(popMenu, "menuItemSettoPriorSpend", "Set budget equal to actual spending from the previous month", null, this.popListener);
 					popMenu.addSeparator();
 					this.addPopupMenuItem(popMenu, "menuItemRolloverPrior", "Rollover balance from prior month", null, this.popListener);
 					this.addPopupMenuItem(popMenu, "menuItemRolloverAll", "Rollover balance from all prior months", null, this.popListener);
 					}
+				popMenu.addSeparator();
+				this.addPopupMenuItem(popMenu, "menuItemClear", "Clear the selected cells", null, this.popListener);
+				this.addPopupMenuItem(popMenu, "menuItemScale", "Multiply the selected cells by a percentage...", null, this.popListener);
+				popMenu.addSeparator();
+				this.addPopupMenuItem(popMenu, "menuItemCopy", "Copy the selected cells", null, this.popListener);
+				this.addPopupMenuItem(popMenu, "menuItemCopyAll", "Copy the whole budget", null, this.popListener);
 				}
 
-				// Add a listener to unset the cell highlight for a right clicked cell if the menu is cancelled 
-				popMenu.addPopupMenuListener(new PopupMenuListener() {
-					@Override
-					public void popupMenuCanceled(final PopupMenuEvent popupMenuEvent) {
-						// Remove the cell highlight for the cell that was right clicked
-						Table.this.popRow = -1;
-						Table.this.popColumn = -1;
+			// Add a listener to unset the cell highlight for a right clicked cell if the menu is cancelled 
+			popMenu.addPopupMenuListener(new PopupMenuListener() {
+				@Override
+				public void popupMenuCanceled(final PopupMenuEvent popupMenuEvent) {
+					// Remove the cell highlight for the cell that was right clicked
+					final int row = Table.this.popRow;
+					final int column = Table.this.popColumn;
+					Table.this.popRow = -1;
+					Table.this.popColumn = -1;
+					if (row != -1)
 						Table.this.model.fireTableCellUpdated(row, column);
-					}
-					@Override
-					public void popupMenuWillBecomeInvisible(final PopupMenuEvent popupMenuEvent) {}
-					@Override
-					public void popupMenuWillBecomeVisible(final PopupMenuEvent popupMenuEvent) {}
-				});
+				}
+				@Override
+				public void popupMenuWillBecomeInvisible(final PopupMenuEvent popupMenuEvent) {}
+				@Override
+				public void popupMenuWillBecomeVisible(final PopupMenuEvent popupMenuEvent) {}
+			});
 
-			// Show the popup
-			popMenu.show(this.table, x, y);
+			this.popMenus[kind] = popMenu;
 			}
+		return this.popMenus[kind];
 	}
 
 	
@@ -506,53 +880,115 @@ public class Table extends EditingTable {
 		@Override
 		public void actionPerformed(final ActionEvent event) {
 			final String cmd = ((JMenuItem) event.getSource()).getName();
-			final int row = Table.this.table.getSelectedRow();
-			final int column = Table.this.table.getSelectedColumn();
-
-			switch(cmd) {
-				// 	Use previous period Budget (Jan is special)
-				case "menuItemPrevious":
-					Table.this.previous(row, column);
-					break;
-				
-				// Apply selected cell to end of year
-				case "menuItemCopytoEOY":
-					Table.this.copytoEOY(row, column);
-					break;
-
-				// Apply selected cell to entire year
-				case "menuItemCopytoAll":
-					Table.this.copytoAll(row, column);
-					break;
-	
-				// Rollover balance from prior month (Jan is special - do not go to previous year)
-				case "menuItemRolloverPrior":
-					Table.this.rolloverPrior(row, column);
-					break;
-
-				// Rollover balance from prior months back to January (Jan is special - do not go to previous year)
-				case "menuItemRolloverAll":
-					Table.this.rolloverAll(row, column);
-					break;
-				
-				// Set budget equal to actual spending for month
-				case "menuItemSettoActualSpend":
-					Table.this.settoActualSpend(row, column);
-					break;
-				
-				// Set budget equal to actual spending from previous month (Jan is special)	
-				case "menuItemSettoPriorSpend":
-					Table.this.settoPriorSpend(row, column);
-					break;
+			final int row = Table.this.popRow;
+			final int column = Table.this.popColumn;
 
-				case "menuItemDistributeTotal":
-					Table.this.distributeTotal(row, column);
-					break;
+			// The action applies to every editable row and month selected
+			final int[] rows = Table.this.getSelectedCategoryRows();
+			final int[] months = Table.this.getSelectedMonths();
 
-				case "menuItemSetToActuals":
-					Table.this.setToActuals(row, column);
-					break;
-			}
+			// Ask for the percentage before changing anything, 100% leaves the values unchanged
+			double percent = 100;
+			if (cmd.equals("menuItemScale"))
+				{
+				final Double entered = Table.this.askPercent();
+				if (entered != null)
+					percent = entered.doubleValue();
+				}
+
+			// Change all of the values at once so the totals are worked out and shown once
+			Table.this.model.beginBatch();
+			try
+				{
+				switch(cmd) {
+					// 	Use previous period Budget (the first month shown is special)
+					case "menuItemPrevious":
+						for (final int r : rows)
+							for (final int month : months)
+								if (month != 1)
+									Table.this.previous(r, month);
+						break;
+					
+					// Apply selected cell to end of year
+					case "menuItemCopytoEOY":
+						for (final int r : rows)
+							Table.this.copytoEOY(r, column);
+						break;
+
+					// Apply selected cell to entire year
+					case "menuItemCopytoAll":
+						for (final int r : rows)
+							Table.this.copytoAll(r, column);
+						break;
+		
+					// Rollover balance from prior month (the first month shown is special - do not go before it)
+					case "menuItemRolloverPrior":
+						for (final int r : rows)
+							Table.this.rolloverPrior(r, column);
+						break;
+
+					// Rollover balance from prior months back to the first month shown (do not go before it)
+					case "menuItemRolloverAll":
+						for (final int r : rows)
+							Table.this.rolloverAll(r, column);
+						break;
+					
+					// Set budget equal to actual spending for month
+					case "menuItemSettoActualSpend":
+						for (final int r : rows)
+							for (final int month : months)
+								Table.this.settoActualSpend(r, month);
+						break;
+					
+					// Set budget equal to actual spending from previous month (the first month shown is special)	
+					case "menuItemSettoPriorSpend":
+						for (final int r : rows)
+							for (final int month : months)
+								if (month != 1)
+									Table.this.settoPriorSpend(r, month);
+						break;
+
+					case "menuItemDistributeTotal":
+						for (final int r : rows)
+							Table.this.distributeTotal(r, column);
+						break;
+
+					case "menuItemSetToActuals":
+						for (final int r : rows)
+							Table.this.setToActuals(r, column);
+						break;
+
+					// Set the selected cells to 0
+					case "menuItemClear":
+						for (final int r : rows)
+							for (final int month : months)
+								Table.this.model.setValueAt(0L, r, month);
+						break;
+
+					// Copy the selected cells or the whole budget to the clipboard
+					case "menuItemCopy":
+						Table.this.copyToClipboard(false);
+						break;
+
+					case "menuItemCopyAll":
+						Table.this.copyToClipboard(true);
+						break;
+
+					// Multiply the selected cells by a percentage
+					case "menuItemScale":
+						if (percent != 100)
+							{
+							for (final int r : rows)
+								for (final int month : months)
+									Table.this.scale(r, month, percent);
+							}
+						break;
+				}
+				}
+			finally
+				{
+				Table.this.model.endBatch();
+				}
 
 		// Remove the cell highlight for the cell that was right clicked
 		Table.this.popRow = -1;
@@ -560,6 +996,214 @@ public class Table extends EditingTable {
 		Table.this.model.fireTableCellUpdated(row, column);
 		}
 	};
+
+
+	/** 
+	 * Paste tab separated values from the clipboard, one line per row,
+	 * starting at the first selected cell. Lines for rows that can't be
+	 * edited are skipped, as are values beyond December. A single value is
+	 * pasted into every selected cell. All of the values are changed in one
+	 * batch.
+	 */
+	void pasteFromClipboard() {
+		// Get the text on the clipboard
+		final String text;
+		try
+			{
+			text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+			}
+		catch (final UnsupportedFlavorException | IOException | IllegalStateException e)
+			{
+			return;
+			}
+		if ((text == null) || (this.getSelectedRow() < 0))
+			return;
+
+		// Finish any edit in progress first
+		final TableCellEditor editor = this.getCellEditor();
+		if (editor != null)
+			editor.stopCellEditing();
+
+		int invalid = 0;
+
+		this.model.beginBatch();
+		try
+			{
+			// Ignore the line end after the last line
+			int length = text.length();
+			while ((length > 0) && ((text.charAt(length - 1) == '\n') || (text.charAt(length - 1) == '\r')))
+				length--;
+
+			final int tab = text.indexOf('\t');
+			final int newline = text.indexOf('\n');
+			if (((tab == -1) || (tab >= length)) && ((newline == -1) || (newline >= length)))
+				{
+				// Put a single value in all of the selected cells
+				for (final int row : this.getSelectedCategoryRows())
+					{
+					final long value = this.model.getParser(this.model.getDisplayCurrencyAt(row)).parse(text, 0, length);
+					if (value == CurrencyParser.INVALID)
+						{
+						invalid++;
+						break;
+						}
+					for (final int month : this.getSelectedMonths())
+						this.model.setDisplayAmountAt(row, month, value);
+					}
+				}
+			else
+				{
+				// Put each line in the next row starting at the first selected cell
+				final int left = this.getSelectedColumn();
+				int row = this.getSelectedRow();
+				int lineStart = 0;
+				while ((lineStart < length) && (row < this.getRowCount()))
+					{
+					int lineEnd = text.indexOf('\n', lineStart);
+					if ((lineEnd == -1) || (lineEnd > length))
+						lineEnd = length;
+					final int contentEnd = ((lineEnd > lineStart) && (text.charAt(lineEnd - 1) == '\r')) ? lineEnd - 1 : lineEnd;
+
+					// Only the months of categories without children can be changed
+					if (this.getRowStyle(row) == Table.ROW_CATEGORY)
+						{
+						final CurrencyParser parser = this.model.getParser(this.model.getDisplayCurrencyAt(row));
+						int fieldStart = lineStart;
+						for (int column = left; (fieldStart <= contentEnd) && (column <= this.model.getMonthCount()); column++)
+							{
+							int fieldEnd = text.indexOf('\t', fieldStart);
+							if ((fieldEnd == -1) || (fieldEnd > contentEnd))
+								fieldEnd = contentEnd;
+
+							// Blank values are left unchanged
+							if ((column >= 1) && (!CurrencyParser.isBlank(text, fieldStart, fieldEnd)))
+								{
+								final long value = parser.parse(text, fieldStart, fieldEnd);
+								if (value != CurrencyParser.INVALID)
+									this.model.setDisplayAmountAt(row, column, value);
+								else
+									invalid++;
+								}
+							fieldStart = fieldEnd + 1;
+							}
+						}
+					row++;
+					lineStart = lineEnd + 1;
+					}
+				}
+			}
+		finally
+			{
+			this.model.endBatch();
+			}
+
+		// Tell the user about any values that weren't pasted
+		if (invalid > 0)
+			JOptionPane.showMessageDialog(this, invalid+" value(s) on the clipboard are not amounts and were not pasted.", "Error (Monthly Budget Editor)", JOptionPane.ERROR_MESSAGE);
+	}
+
+
+	/** 
+	 * Copy the selected cells, or all of the categories and columns, to the
+	 * clipboard as tab separated text.
+	 * 
+	 * @param all - true to copy the whole budget, false to copy the selected cells.
+	 */
+	void copyToClipboard(final boolean all) {
+		final int[] rows;
+		final int[] columns;
+		if ((all) || (this.getSelectedRowCount() == 0))
+			{
+			// Every category, including any hidden by the search or collapsed
+			rows = new int[this.model.getBudgetCategoriesList().getCategoryCount()];
+			for (int i = 0; i < rows.length; i++)
+				rows[i] = i;
+			columns = new int[this.getColumnCount()];
+			for (int i = 0; i < columns.length; i++)
+				columns[i] = i;
+			}
+		else
+			{
+			// The selected rows of the table
+			rows = this.getSelectedRows();
+			for (int i = 0; i < rows.length; i++)
+				rows[i] = this.model.toCategoryRow(rows[i]);
+			columns = this.getSelectedColumns();
+			}
+
+		final StringSelection selection = new StringSelection(this.model.toTabSeparated(rows, columns, all));
+		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, selection);
+	}
+
+
+	/** 
+	 * Get the selected rows that can be edited.
+	 * 
+	 * @return int[] - The selected rows of categories that don't have children.
+	 */
+	private int[] getSelectedCategoryRows() {
+		final int[] selected = this.getSelectedRows();
+		int count = 0;
+		for (final int row : selected)
+			{
+			if (this.getRowStyle(row) == Table.ROW_CATEGORY)
+				selected[count++] = row;
+			}
+		return Arrays.copyOf(selected, count);
+	}
+
+
+	/** 
+	 * Get the selected columns that are months.
+	 * 
+	 * @return int[] - The selected month columns [1...month count].
+	 */
+	private int[] getSelectedMonths() {
+		final int[] selected = this.getSelectedColumns();
+		int count = 0;
+		for (final int column : selected)
+			{
+			if ((column >= 1) && (column <= this.model.getMonthCount()))
+				selected[count++] = column;
+			}
+		return Arrays.copyOf(selected, count);
+	}
+
+
+	/** 
+	 * Ask for the percentage to scale the selected cells by.
+	 * 
+	 * @return Double - The percentage entered or null if cancelled or the
+	 * percentage isn't a number.
+	 */
+	private Double askPercent() {
+		final String text = JOptionPane.showInputDialog(this, "Percentage to multiply the selected budgets by (for example 110 to add 10%):", "100");
+		if (text == null)
+			return null;
+		try
+			{
+			return Double.valueOf(text.trim().replace("%", ""));
+			}
+		catch (final NumberFormatException e)
+			{
+			JOptionPane.showMessageDialog(this, "\""+text+"\" is not a percentage.", "Error (Monthly Budget Editor)", JOptionPane.ERROR_MESSAGE);
+			return null;
+			}
+	}
+
+
+	/** 
+	 * Method to multiply a cell's budget value by a percentage.
+	 * 
+	 * @param row - The row of the cell.
+	 * @param column - The column of the cell.
+	 * @param percent - The percentage to multiply by.
+	 */
+	private void scale(final int row, final int column, final double percent)
+	{
+		final Long cellValue = this.model.getLongValueAt(row, column);
+		this.model.setValueAt(Math.round((cellValue * percent) / 100.0), row, column);
+	}
 	
 
 	/** 
@@ -575,7 +1219,8 @@ public class Table extends EditingTable {
 
 	
 	/** 
-	 * Method to copy the selected cell's value to the end of the year.
+	 * Method to copy the selected cell's value to the end of the year, or to
+	 * the last month shown when the months shown aren't a calendar year.
 	 * 
 	 * @param row - The row where the right mouse click occurred.
 	 * @param column - The column where the right mouse click occurred.
@@ -583,13 +1228,14 @@ public class Table extends EditingTable {
 	private void copytoEOY(final int row, final int column)
 	{
 		final Long cellValue = this.model.getLongValueAt(row, column);
-		for (int i = column + 1; i < 13; i++)
+		for (int i = column + 1; i <= this.model.getMonthCount(); i++)
 			this.model.setValueAt(cellValue, row, i);
 	}
 
 	
 	/** 
-	 * Method to copy the selected cell's value to the entire year.
+	 * Method to copy the selected cell's value to the entire year, or to all
+	 * of the months shown when they aren't a calendar year.
 	 * 
 	 * @param row - The row where the right mouse click occurred.
 	 * @param column - The column where the right mouse click occurred.
@@ -597,7 +1243,7 @@ public class Table extends EditingTable {
 	private void copytoAll(final int row, final int column)
 	{
 		final Long cellValue = this.model.getLongValueAt(row, column);
-		for (int i = 1; i < 13; i++)
+		for (int i = 1; i <= this.model.getMonthCount(); i++)
 			{
 			if (i != column)
 				this.model.setValueAt(cellValue, row, i);
@@ -617,17 +1263,17 @@ public class Table extends EditingTable {
 	private void rolloverPrior(final int row, final int column)
 	{
 		// Get the budget category item
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get total actual spending last month plus this month
-			final TransactionTotals actualSpending = new TransactionTotals(this.context, item.getAccount(), this.model.getBudgetYear(), column - 1, 2);
+			// Get actual spending last month, which may be in the year before this month
+			final long actualSpending = this.getActualsAt(item.getAccount(), column - 1);
 			
 			// Get total amount budgeted last month + this month
-			final Long totalBudget = item.getBudgetValueForMonth(column - 1) + item.getBudgetValueForMonth(column);
+			final Long totalBudget = this.model.getLongValueAt(row, column - 1) + this.model.getLongValueAt(row, column);
 
 			// Set last months budget equal to actual spending for the month
-			Long v = actualSpending.getTotals()[column - 1];
+			Long v = actualSpending;
 
 			// If this is an income category then the sign has to be changed
 			if (item.getCategoryType() == Account.AccountType.INCOME)
@@ -639,9 +1285,9 @@ public class Table extends EditingTable {
 			// Subtract last month's actual spending from the total amount budgeted and store as this month's new budget
 			// If this is an income category then the sign has to be changed
 			if (item.getCategoryType() == Account.AccountType.INCOME)
-				v = (totalBudget + actualSpending.getTotals()[column - 1]);
+				v = (totalBudget + actualSpending);
 			else		
-				v = (totalBudget - actualSpending.getTotals()[column - 1]);
+				v = (totalBudget - actualSpending);
 
 			// Save the new value for the current month
 			this.model.setValueAt(v, row, column);
@@ -652,8 +1298,9 @@ public class Table extends EditingTable {
 
 	
 	/** 
-	 * Method to rollover the balance from all prior months back to January of
-	 * the current budget year. This will set all the prior months budgets to 
+	 * Method to rollover the balance from all prior months back to the first
+	 * month shown, January of the current budget year when a calendar year is
+	 * shown. This will set all the prior months budgets to 
 	 * the actual spending for those months and then add or subtract any remainder
 	 * from their original budget to this month's budgeted amount.
 	 * 
@@ -667,21 +1314,18 @@ public class Table extends EditingTable {
 		int i;
 
 		// Get the budget category item
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get total actual spending since the beginning of the year including this month
-			final TransactionTotals actualSpending = new TransactionTotals(this.context, item.getAccount(), this.model.getBudgetYear(), 1, column);
-			
 			// Get total amount budgeted for the year to date (up to the end of the selected month)
 			for (i = 1; i < column + 1; i++)
-				totalBudget += item.getBudgetValueForMonth(i);
+				totalBudget += this.model.getLongValueAt(row, i);
 
 			// Set prior months budgets equal to actual spending for each month
 			for ( int month = 1; month < column; month++)
 				{
 				// Get prior spending
-				Long spend = actualSpending.getTotals()[month];
+				Long spend = this.getActualsAt(item.getAccount(), month);
 
 				// If this is an income category then the sign has to be changed
 				if (item.getCategoryType() == Account.AccountType.INCOME)
@@ -709,14 +1353,11 @@ public class Table extends EditingTable {
 	private void settoActualSpend(final int row, final int column)
 	{
 		// Get the budget category item
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get this month's actuals
-			final TransactionTotals actualTotals = new TransactionTotals(this.context, item.getAccount(), this.model.getBudgetYear(), column, 1);
-
-			// Set the selected cell equal to the prior month actuals
-			Long v = actualTotals.getTotals()[column];
+			// Set the selected cell equal to this month's actuals
+			Long v = this.getActualsAt(item.getAccount(), column);
 
 			// If this is an income category then the sign has to be changed
 			if (item.getCategoryType() == Account.AccountType.INCOME)
@@ -739,15 +1380,11 @@ public class Table extends EditingTable {
 	 */
 	private void settoPriorSpend(final int row, final int column)
 	{
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get prior month's actuals
-			final Account acct = item.getAccount();
-			final TransactionTotals actualTotals = new TransactionTotals(this.context, acct, this.model.getBudgetYear(), column - 1, 1);
-
-			// Set the selected cell equal to the prior month totals
-			this.model.setValueAt(actualTotals.getTotals()[column - 1], row, column);
+			// Set the selected cell equal to the prior month's actuals, which may be in the year before
+			this.model.setValueAt(this.getActualsAt(item.getAccount(), column - 1), row, column);
 			}
 		else
 			System.err.println("ERROR: Item is null in settoPriorSpend.");	
@@ -756,7 +1393,7 @@ public class Table extends EditingTable {
 	
 	/** 
 	 * Method to distribute the total budget for this category evenly across all
-	 * months.
+	 * months shown.
 	 * 
 	 * @param row - The row where the right mouse click occurred.
 	 * @param column - The column where the right mouse click occurred.
@@ -764,22 +1401,23 @@ public class Table extends EditingTable {
 	private void distributeTotal(final int row, final int column)
 	{
 		// Get the budget category item
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get the budget total
-			final long cellValue = item.getBudgetTotal();
+			// Get the budget total of the months shown
+			final int last = this.model.getMonthCount();
+			final long cellValue = this.model.getLongValueAt(row, last + 1);
 
-			// Calculate monthly amount and final December amount which may be different
-			final Long monthlyValue = cellValue / 12;
-			final Long decemberValue = cellValue - (monthlyValue * 11);
+			// Calculate monthly amount and final amount for the last month which may be different
+			final Long monthlyValue = cellValue / last;
+			final Long lastValue = cellValue - (monthlyValue * (last - 1));
 
-			// Now spread the value across all months except december
-			for (int i = 1; i < 12; i++)
+			// Now spread the value across all months except the last
+			for (int i = 1; i < last; i++)
 				this.model.setValueAt(monthlyValue, row, i);
 
-			// Now set December to whatever is left over
-			this.model.setValueAt(decemberValue, row, 12);
+			// Now set the last month to whatever is left over
+			this.model.setValueAt(lastValue, row, last);
 			}
 		else
 			System.err.println("ERROR: Item is null in distributeTotal(.");
@@ -793,17 +1431,14 @@ public class Table extends EditingTable {
 	 */
 	private void setToActuals(final int row, final int column) {
 		// Get the budget category item
-		final BudgetCategoryItem item = this.model.getBudgetCategoriesList().getCategoryItemByIndex(row);
+		final BudgetCategoryItem item = this.model.getBudgetCategoryItem(row);
 		if (item != null)
 			{
-			// Get total actual spending since the beginning of the year including this month
-			final TransactionTotals actualSpending = new TransactionTotals(this.context, item.getAccount(), this.model.getBudgetYear(), 1, column);
-
-			// Set prior months budgets equal to actual spending for each month
-			for ( int month = 1; month <= 12; month++)
+			// Set prior months budgets equal to actual spending for each month shown
+			for ( int month = 1; month <= this.model.getMonthCount(); month++)
 				{
-				// Get prior spending
-				Long spend = actualSpending.getTotals()[month];
+				// Get prior spending, months after the selected month are not totalled
+				Long spend = (month <= column) ? this.getActualsAt(item.getAccount(), month) : 0L;
 
 				// If this is an income category then the sign has to be changed
 				if (item.getCategoryType() == Account.AccountType.INCOME)
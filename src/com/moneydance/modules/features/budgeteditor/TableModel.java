@@ -32,8 +32,22 @@ package com.moneydance.modules.features.budgeteditor;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
 import com.infinitekind.moneydance.model.Account;
@@ -41,13 +55,8 @@ import com.infinitekind.moneydance.model.AccountBook;
 import com.infinitekind.moneydance.model.Account.AccountType;
 import com.infinitekind.moneydance.model.AccountUtil;
 import com.infinitekind.moneydance.model.Budget;
-import com.infinitekind.moneydance.model.BudgetItem;
-import com.infinitekind.moneydance.model.BudgetItemList;
-import com.infinitekind.moneydance.model.BudgetPeriod;
 import com.infinitekind.moneydance.model.CurrencyType;
 import com.infinitekind.moneydance.model.CurrencyUtil;
-import com.infinitekind.moneydance.model.PeriodType;
-import com.infinitekind.util.DateUtil;
 import com.moneydance.apps.md.controller.FeatureModuleContext;
 
 /**
@@ -57,8 +66,11 @@ import com.moneydance.apps.md.controller.FeatureModuleContext;
 * @author  Jerry Jones
 */
 public class TableModel extends AbstractTableModel  {
+    // The column names for a calendar year
+    private static final String[] CALENDAR_COLUMNS = {"Category","Jan","Feb","Mar","Apr","May","June","July","Aug","Sep","Oct","Nov","Dec","Totals"};
+
     // The column names for the table
-    private final String[] columnNames = {"Category","Jan","Feb","Mar","Apr","May","June","July","Aug","Sep","Oct","Nov","Dec","Totals"};
+    private String[] columnNames = TableModel.CALENDAR_COLUMNS;
        
     // Main budget editor window
     BudgetEditorWindow window;
@@ -72,15 +84,99 @@ public class TableModel extends AbstractTableModel  {
     // Budget object for the selected budget
     private Budget budget;
 
-    // The budget year to edit
+    // The budget year to edit, the year of the first month shown
     private int year;
 
+    // The first month shown (1...12)
+    private int firstMonth = 1;
+
+    // The number of months shown (12, 24 or 36)
+    private int monthCount = 12;
+
+    // Values of each year the months shown are in, null until a month of the year is shown
+    private BudgetValues[] periodValues = new BudgetValues[1];
+
+    // When true the budget of the year before is shown with each month
+    private boolean showReference = false;
+
+    // Values of the year before each year shown, null until they're shown
+    private BudgetValues[] referenceValues = new BudgetValues[1];
+
+    // Index of the budget items shared by all of the years of the budget
+    private BudgetItemIndex itemIndex;
+
+    // The version of the budget the index was built from
+    private int itemIndexVersion;
+
     // Budget Categories list
     private BudgetCategoriesList budgetCategoriesList;
 
+    // The most budgets and years to keep loaded
+    private static final int MAX_LOADED = 8;
+
+    // Values of the budgets and years loaded recently by budget key and year, least recently used first
+    private final LinkedHashMap<String, BudgetValues> loadedValues = new LinkedHashMap<String, BudgetValues>(16, 0.75f, true);
+
+    // Index of the category names used to search for categories
+    private CategorySearchIndex searchIndex;
+
+    // The text the categories are filtered by
+    private String filterText = "";
+
+    // The category rows matching the search in order or null if there's no search
+    private int[] matchedRows;
+
+    // Keys of the categories whose children are hidden
+    private final Set<String> collapsedCategories = new HashSet<String>();
+
+    // The category rows shown in the table in order or null to show all of them
+    private int[] visibleRows;
+
+    // Parsers for the amounts typed or pasted by currency
+    private final Map<CurrencyType, CurrencyParser> parsers = new HashMap<CurrencyType, CurrencyParser>();
+
+    // When true budget values are being changed in a batch and rolled up when the batch ends
+    private boolean batching = false;
+
+    // The values changed during the batch
+    private final List<BudgetValues> batchValues = new ArrayList<BudgetValues>();
+
+    // Incremented each time data is loaded so that out of date background loads are ignored
+    private int loadGeneration = 0;
+
+    // True once data has been loaded into the table
+    private boolean loaded = false;
+
+    // Journal of the edits that have not been saved yet
+    private final EditJournal journal;
+
+    // Changes made in Moneydance since the data was loaded
+    private final BookChangeTracker tracker;
+
     // The decimal separator character
     private char separator;
 
+    // The base currency of the data file
+    private final CurrencyType baseType;
+
+    // When true values are shown in each category's currency rather than the base currency
+    private boolean useCategoryCurrency;
+
+    // Formatted budget values by row and column, null until a cell is displayed
+    private String[][] displayValues;
+
+    // Budget values by row and column converted to the displayed currency
+    private long[][] displayAmounts;
+
+    // True for the cells whose converted value is in displayAmounts
+    private boolean[][] amountCached;
+
+    // Budget values of the year before by row and column converted to the displayed currency
+    private long[][] referenceAmounts;
+
+    // True for the cells whose converted value is in referenceAmounts
+    private boolean[][] referenceCached;
+
     public TableModel(final BudgetEditorWindow window, final FeatureModuleContext context, final Budget budget, final String year) {
         // Save main window for later
         this.window = window;
@@ -102,13 +198,32 @@ public class TableModel extends AbstractTableModel  {
         DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
         this.separator = symbols.getDecimalSeparator();
 
-        // Load the category and budget data from Moneydance
-        this.LoadData();
+        // Save the base currency for later
+        this.baseType = this.book.getCurrencies().getBaseType();
+
+        // Get the currency to show values in
+        this.useCategoryCurrency = window.useCategoryCurrency.isSelected();
+
+        // Get the months to show
+        this.setPeriod(window.getFirstMonth(), window.getMonthCount());
+        this.showReference = window.showReference.isSelected();
+
+        // Open the journal of unsaved edits
+        this.journal = EditJournal.open(this.book);
+
+        // Track changes to the categories and budget items
+        this.tracker = new BookChangeTracker(this.book);
+
+        // Start with an empty table, the data is loaded once the window is shown
+        this.budgetCategoriesList = new BudgetCategoriesList(this.book);
     }
     
     
     /** 
-     * Method to reload the data after the budget or budget year changes.
+     * Method to show another budget or budget year. The categories are the
+     * same for every budget and year so only the budget values are switched.
+     * Values that were loaded recently are shown without loading them again
+     * and values that were edited are kept until they're saved or discarded.
      * 
      * @param budget - The budget to load.
      * @param year - The budget year to edit.
@@ -119,8 +234,400 @@ public class TableModel extends AbstractTableModel  {
         // Save the year
         this.year = Integer.parseInt(year);
 
-        // Update the table
-        this.LoadData ();
+        // Load everything again if nothing is loaded yet
+        if (!this.loaded)
+            {
+            this.LoadData ();
+            return;
+            }
+
+        // Load everything again if the categories changed, keeping the values edited in any budget and year
+        if (this.isStructureChanged(this.tracker.take()))
+            {
+            this.reloadKeepingEdits();
+            return;
+            }
+
+        // Changes made from here on are applied on the next refresh
+        this.tracker.track(this.budget);
+
+        // Switch to the values for this budget and year, the other years shown are loaded when needed
+        this.budgetCategoriesList.setValues(this.getValues(this.budget, this.year));
+        this.resetPeriodValues();
+
+        // Update the table, the column names include the year unless a calendar year is shown
+        if (this.isCalendarYear())
+            this.fireTableDataChanged();
+        else
+            this.fireTableStructureChanged();
+    }
+
+
+    /** 
+     * Method to get the values for a budget and year, loading them if they
+     * aren't loaded yet or if the budget changed since they were loaded.
+     * 
+     * @param budget - The budget.
+     * @param year - The budget year.
+     * @return BudgetValues - The values for the budget and year.
+     */
+    private BudgetValues getValues(final Budget budget, final int year) {
+        final String key = TableModel.valuesKey(budget, year);
+        final int version = this.tracker.getVersion(budget.getKey());
+        BudgetValues values = this.loadedValues.get(key);
+
+        if ((values == null) || ((!values.isDirty()) && (values.getVersion() != version)))
+            {
+            values = BudgetValues.load(this.budgetCategoriesList, budget, year, this.getItemIndex(budget, version), version);
+            this.loadedValues.put(key, values);
+            this.trimLoaded(values);
+            }
+        else if (values.getVersion() != version)
+            // Values that were edited are kept when the budget changed, the rest are brought up to date
+            values.refreshUnchanged(this.getItemIndex(budget, version), version);
+        return values;
+    }
+
+
+    /** 
+     * Method to get the index of the budget items in a budget. One index is
+     * kept and shared by every year of the budget until the budget changes.
+     * 
+     * @param budget - The budget.
+     * @param version - The current version of the budget.
+     * @return BudgetItemIndex - Index of the budget items.
+     */
+    private BudgetItemIndex getItemIndex(final Budget budget, final int version) {
+        if ((this.itemIndex == null) || (this.itemIndexVersion != version) || (!this.itemIndex.isFor(budget)))
+            this.setItemIndex(new BudgetItemIndex(budget), version);
+        return this.itemIndex;
+    }
+
+
+    /** 
+     * @param index - Index of the budget items to share.
+     * @param version - The version of the budget the index was built from.
+     */
+    private void setItemIndex(final BudgetItemIndex index, final int version) {
+        this.itemIndex = index;
+        this.itemIndexVersion = version;
+    }
+
+
+    /** 
+     * Method to unload the least recently used budgets and years when more
+     * than MAX_LOADED are loaded. The values shown and values that were
+     * edited are never unloaded.
+     * 
+     * @param keep - Values that were just loaded.
+     */
+    private void trimLoaded(final BudgetValues keep) {
+        for (final Iterator<BudgetValues> iter = this.loadedValues.values().iterator(); (this.loadedValues.size() > TableModel.MAX_LOADED) && (iter.hasNext()); )
+            {
+            final BudgetValues values = iter.next();
+            if ((values != keep) && (!this.isShown(values)) && (!values.isDirty()))
+                iter.remove();
+            }
+    }
+
+
+    /** 
+     * @param budget - The budget.
+     * @param year - The budget year.
+     * @return String - The key of the values for the budget and year.
+     */
+    private static String valuesKey(final Budget budget, final int year) {
+        return budget.getKey() + ":" + year;
+    }
+
+
+    /** 
+     * Method to unload the values that were edited when the edits are being
+     * discarded so that they are loaded again when next shown. The values of
+     * the budget year shown are loaded again straight away.
+     */
+    void discardEdits() {
+        this.loadedValues.values().removeIf(BudgetValues::isDirty);
+
+        // Don't leave the discarded edits showing
+        if (this.budgetCategoriesList.getValues() == null)
+            this.resetPeriodValues();
+        else
+            {
+            this.budgetCategoriesList.setValues(this.getValues(this.budget, this.year));
+            this.resetPeriodValues();
+            this.fireTableDataChanged();
+            }
+    }
+
+
+    /** 
+     * Method to set the months shown in the table. A calendar year is the
+     * first month of January and 12 months. Edited values are kept when the
+     * months shown change.
+     * 
+     * @param firstMonth - The first month shown (1...12) in the budget year.
+     * @param monthCount - The number of months shown (12, 24 or 36).
+     */
+    void setPeriod(final int firstMonth, final int monthCount) {
+        if ((firstMonth == this.firstMonth) && (monthCount == this.monthCount))
+            return;
+        this.firstMonth = firstMonth;
+        this.monthCount = monthCount;
+
+        // Name the columns by month, and year too if the months aren't a calendar year
+        if (this.isCalendarYear())
+            this.columnNames = TableModel.CALENDAR_COLUMNS;
+        else
+            {
+            this.columnNames = new String[monthCount + 2];
+            this.columnNames[0] = TableModel.CALENDAR_COLUMNS[0];
+            this.columnNames[monthCount + 1] = TableModel.CALENDAR_COLUMNS[13];
+            }
+        this.resetPeriodValues();
+
+        // The columns changed
+        this.displayValues = null;
+        this.fireTableStructureChanged();
+    }
+
+
+    /** 
+     * Method to forget the values of the years shown so that each year is
+     * found again the first time one of its months is shown.
+     */
+    private void resetPeriodValues() {
+        this.periodValues = new BudgetValues[((this.firstMonth - 1 + this.monthCount - 1) / 12) + 1];
+        this.referenceValues = new BudgetValues[this.periodValues.length];
+        if (!this.isCalendarYear())
+            {
+            for (int column = 1; column <= this.monthCount; column++)
+                this.columnNames[column] = TableModel.CALENDAR_COLUMNS[this.getMonthAt(column)]+" "+this.getYearAt(column);
+            }
+    }
+
+
+    /** 
+     * Method to show or hide the budget of the year before with each month.
+     * The values of the year before are only loaded once they're shown.
+     * 
+     * @param showReference - true to show the budget of the year before.
+     */
+    void setShowReference(final boolean showReference) {
+        if (showReference == this.showReference)
+            return;
+        this.showReference = showReference;
+
+        // Free the values of the year before when they're hidden
+        if (!showReference)
+            this.referenceValues = new BudgetValues[this.periodValues.length];
+
+        // Every month has to be shown again
+        this.displayValues = null;
+        if (this.getRowCount() > 0)
+            this.fireTableRowsUpdated(0, this.getRowCount() - 1);
+    }
+
+
+    /** 
+     * @return boolean - true if the budget of the year before is shown with each month.
+     */
+    boolean isReferenceShown() {
+        return this.showReference;
+    }
+
+
+    /** 
+     * @return boolean - true if the months shown are January to December of the budget year.
+     */
+    boolean isCalendarYear() {
+        return (this.firstMonth == 1) && (this.monthCount == 12);
+    }
+
+
+    /** 
+     * @return int - The number of months shown. The totals are in the column after the last month.
+     */
+    int getMonthCount() {
+        return this.monthCount;
+    }
+
+
+    /** 
+     * Method to get the month of the year shown in a column.
+     * 
+     * @param column - A month column [1...month count].
+     * @return int - The month (1...12).
+     */
+    int getMonthAt(final int column) {
+        return ((this.firstMonth - 2 + column) % 12) + 1;
+    }
+
+
+    /** 
+     * Method to get the year of the month shown in a column.
+     * 
+     * @param column - A month column [1...month count].
+     * @return int - The year the month is in.
+     */
+    int getYearAt(final int column) {
+        return this.year + ((this.firstMonth - 2 + column) / 12);
+    }
+
+
+    /** 
+     * Method to get the values of the year shown in a column. The values of
+     * a year are loaded the first time one of its months is shown.
+     * 
+     * @param column - A month column [1...month count].
+     * @return BudgetValues - The values for the year the month is in.
+     */
+    private BudgetValues getValuesAt(final int column) {
+        return this.getYearValues(this.getYearAt(column));
+    }
+
+
+    /** 
+     * Method to get the values of the year before the year shown in a
+     * column. The values are loaded the first time they're needed from the
+     * index of the budget items shared by every year.
+     * 
+     * @param column - A month column [1...month count].
+     * @return BudgetValues - The values for the year before.
+     */
+    private BudgetValues getReferenceValuesAt(final int column) {
+        final int index = (this.firstMonth - 2 + column) / 12;
+        BudgetValues values = this.referenceValues[index];
+        if (values == null)
+            {
+            values = this.getYearValues(this.year + index - 1);
+            this.referenceValues[index] = values;
+            }
+        return values;
+    }
+
+
+    /** 
+     * Method to get the values of a year of the selected budget. The values
+     * of the years shown are kept so that the same values are always shown.
+     * 
+     * @param year - The budget year.
+     * @return BudgetValues - The values for the year.
+     */
+    private BudgetValues getYearValues(final int year) {
+        final int index = year - this.year;
+        if ((index < 0) || (index >= this.periodValues.length))
+            return this.getValues(this.budget, year);
+
+        BudgetValues values = this.periodValues[index];
+        if (values == null)
+            {
+            values = (index == 0) ? this.budgetCategoriesList.getValues() : this.getValues(this.budget, year);
+            this.periodValues[index] = values;
+            }
+        return values;
+    }
+
+
+    /** 
+     * Method to get the column that a month of some budget values is shown in.
+     * 
+     * @param values - The budget values.
+     * @param month - The month (1...12).
+     * @return int - The column or -1 if the month isn't shown.
+     */
+    private int getColumnOf(final BudgetValues values, final int month) {
+        final int column = ((values.getYear() - this.year) * 12) + month - this.firstMonth + 1;
+        return ((column >= 1) && (column <= this.monthCount) && (this.isShown(values))) ? column : -1;
+    }
+
+
+    /** 
+     * @param values - The budget values to check.
+     * @return boolean - true if the values are for one of the years shown.
+     */
+    private boolean isShown(final BudgetValues values) {
+        if (values == this.budgetCategoriesList.getValues())
+            return true;
+        for (final BudgetValues shown : this.periodValues)
+            {
+            if (shown == values)
+                return true;
+            }
+        return false;
+    }
+
+
+    /** 
+     * Method to get a budget value or the total of the months shown for a
+     * category.
+     * 
+     * @param categoryRow - The row in the budget categories list.
+     * @param column - The column [1...month count + 1].
+     * @return long - The value in the category currency.
+     */
+    long getCategoryValue(final int categoryRow, final int column) {
+        // The totals of a calendar year are kept with the values
+        if (column <= this.monthCount)
+            return this.getValuesAt(column).get(categoryRow, this.getMonthAt(column));
+        if (this.isCalendarYear())
+            return this.budgetCategoriesList.getValues().get(categoryRow, 13);
+
+        long total = 0;
+        for (int month = 1; month <= this.monthCount; month++)
+            total += this.getValuesAt(month).get(categoryRow, this.getMonthAt(month));
+        return total;
+    }
+
+
+    /** 
+     * Method to compare two budgets, or one budget in two years. Values that
+     * are loaded, including values that were edited and not saved, are
+     * compared without loading them again.
+     * 
+     * @param firstBudget - The budget to compare with.
+     * @param firstYear - The budget year to compare with.
+     * @param secondBudget - The budget to compare.
+     * @param secondYear - The budget year to compare.
+     * @return BudgetComparison - The differences between the budgets.
+     */
+    BudgetComparison compare(final Budget firstBudget, final int firstYear, final Budget secondBudget, final int secondYear) {
+        return new BudgetComparison(this.budgetCategoriesList, this.getComparedValues(firstBudget, firstYear), this.getComparedValues(secondBudget, secondYear));
+    }
+
+
+    /** 
+     * @param budget - The budget.
+     * @param year - The budget year.
+     * @return BudgetValues - The values shown for the budget and year or the 
+     * values loaded for them if they aren't shown.
+     */
+    private BudgetValues getComparedValues(final Budget budget, final int year) {
+        if (budget.getKey().equals(this.budget.getKey()))
+            return this.getYearValues(year);
+        return this.getValues(budget, year);
+    }
+
+
+    /** 
+     * @return List<BudgetValues> - The values of the years shown that are
+     * loaded followed by any other values that were edited.
+     */
+    private List<BudgetValues> getLoadedPeriodValues() {
+        final List<BudgetValues> list = new ArrayList<BudgetValues>();
+        if (this.budgetCategoriesList.getValues() != null)
+            list.add(this.budgetCategoriesList.getValues());
+        for (final BudgetValues values : this.periodValues)
+            {
+            if ((values != null) && (!list.contains(values)))
+                list.add(values);
+            }
+        for (final BudgetValues values : this.loadedValues.values())
+            {
+            if ((values.isDirty()) && (!list.contains(values)))
+                list.add(values);
+            }
+        return list;
     }
 
     
@@ -128,41 +635,371 @@ public class TableModel extends AbstractTableModel  {
      * Method to load the data for the table.
      */
     public void LoadData () {
+        // Changes made from here on are applied on the next refresh
+        this.tracker.track(this.budget);
+
+        // Load the data and show it
+        this.publish(this.buildData(this.budget, this.year));
+    }
+
+
+    /**
+     * Method to load the data for the table on a background thread so that
+     * the window can be shown while the data loads. The data is shown in the
+     * table all at once when it has been loaded.
+     * 
+     * @param loaded - Called on the event dispatch thread once the data is shown.
+     */
+    public void loadInBackground(final Runnable loaded) {
+        // Loads started later replace this one
+        final int generation = ++this.loadGeneration;
+        final Budget loadBudget = this.budget;
+        final int loadYear = this.year;
+
+        // Changes made from here on are applied on the next refresh
+        this.tracker.track(loadBudget);
+
+        new SwingWorker<LoadedData, Void>() {
+            @Override
+            protected LoadedData doInBackground() {
+                return TableModel.this.buildData(loadBudget, loadYear);
+            }
+
+            @Override
+            protected void done() {
+                // Show the data unless the table was reloaded while this was loading
+                if (generation == TableModel.this.loadGeneration)
+                    {
+                    try
+                        {
+                        TableModel.this.publish(this.get());
+                        }
+                    catch (final InterruptedException | ExecutionException e)
+                        {
+                        e.printStackTrace();
+                        System.err.println("ERROR: Loading the budget data failed.");
+                        }
+                    }
+                loaded.run();
+            }
+        }.execute();
+    }
+
+
+    /**
+     * Method to use this model, kept loaded after its window closed, with a
+     * new window.
+     * 
+     * @param window - The new budget editor window.
+     */
+    void attach(final BudgetEditorWindow window) {
+        this.window = window;
+
+        // The new window's settings may show values in another currency
+        this.useCategoryCurrency = window.useCategoryCurrency.isSelected();
+        this.displayValues = null;
+
+        // The new window's settings may show other months
+        this.setPeriod(window.getFirstMonth(), window.getMonthCount());
+        this.setShowReference(window.showReference.isSelected());
+
+        // The new window's search box is empty
+        this.setFilter("");
+    }
+
+
+    /**
+     * Method to change the currency the values are shown in. Only the way the
+     * values are shown changes so the data is not loaded again.
+     * 
+     * @param useCategoryCurrency - true to show values in each category's
+     * currency, false to show them in the base currency.
+     */
+    public void setUseCategoryCurrency(final boolean useCategoryCurrency) {
+        if (useCategoryCurrency == this.useCategoryCurrency)
+            return;
+        this.useCategoryCurrency = useCategoryCurrency;
+
+        // Every value has to be shown again
+        this.displayValues = null;
+        if (this.getRowCount() > 0)
+            this.fireTableRowsUpdated(0, this.getRowCount() - 1);
+    }
+
+
+    /**
+     * Method to determine if the data for a budget and year is loaded.
+     * 
+     * @param budget - The budget to check.
+     * @param year - The budget year to check.
+     * @return boolean - true if the data for the budget and year is loaded.
+     */
+    boolean isLoaded(final Budget budget, final int year) {
+        return (this.loaded) && (year == this.year) && (budget != null) && (budget.getKey().equals(this.budget.getKey()));
+    }
+
+
+    /**
+     * Method to determine if the model has data loaded.
+     * 
+     * @return boolean - true if data has been loaded.
+     */
+    boolean isLoaded() {
+        return this.loaded;
+    }
+
+
+    /**
+     * Method to determine if any budget values were edited and not saved.
+     * 
+     * @return boolean - true if any budget values were edited.
+     */
+    boolean hasEdits() {
+        for (final BudgetValues values : this.getLoadedPeriodValues())
+            {
+            if (values.isDirty())
+                return true;
+            }
+        return false;
+    }
+
+
+    /**
+     * Method to bring the table up to date with the changes made in Moneydance
+     * since the data was loaded. Only the budget values of the categories whose
+     * budget items changed are updated unless categories were added, deleted,
+     * moved, renamed, hidden or made inactive in which case the data is loaded
+     * again. Budget values that were edited but not saved are kept.
+     */
+    public void refresh() {
+        // Data still loading already includes the changes
+        if (!this.loaded)
+            return;
+
+        final BookChangeTracker.Changes changes = this.tracker.take();
+        if (changes.isEmpty())
+            return;
+
+        // Load everything again if the budget or the categories changed
+        if ((changes.budgetChanged) || (this.isStructureChanged(changes)))
+            {
+            this.reloadKeepingEdits();
+            return;
+            }
+
+        // The years before the years shown are loaded again when next shown
+        this.referenceValues = new BudgetValues[this.periodValues.length];
+
+        // Index the budget items again, the values shown will match this version of the budget
+        final int version = this.tracker.getVersion(this.budget.getKey());
+        final BudgetItemIndex budgetItemIndex = new BudgetItemIndex(this.budget);
+        this.setItemIndex(budgetItemIndex, version);
+
+        // Update the categories whose items changed in each year of the budget loaded, the
+        // values edited in other budgets are brought up to date when they're shown or saved
+        final long[] values = new long[13];
+        for (final BudgetValues budgetValues : this.getLoadedPeriodValues())
+            {
+            if (!budgetValues.getBudget().getKey().equals(this.budget.getKey()))
+                continue;
+            budgetValues.setVersion(version);
+            for (final String uuid : changes.changedValues)
+                {
+                final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItem(uuid);
+                if ((item == null) || (item.hasChildren()))
+                    continue;
+
+                // Budget values that were edited take priority over the budget
+                Arrays.fill(values, 0);
+                budgetItemIndex.getValues(uuid, budgetValues.getYear(), values);
+                for (int month = 1; month <= 12; month++)
+                    {
+                    if ((!budgetValues.isChanged(item.getRow(), month)) && (budgetValues.get(item.getRow(), month) != values[month]))
+                        budgetValues.set(null, item.getRow(), month, values[month], item.getCategoryType());
+                    }
+                }
+            }
+
+        // Update the table
+        this.fireTableDataChanged();
+    }
+
+
+    /**
+     * Method to determine if a category was changed in a way that changes how
+     * it is shown in the table.
+     * 
+     * @param uuid - The UUID of the category that was modified.
+     * @return boolean - true if the category must be loaded again.
+     */
+    private boolean isCategoryChanged(final String uuid) {
+        final Account acct = this.book.getAccountByUUID(uuid);
+        final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItem(uuid);
+
+        // Is the category shown when it shouldn't be or the other way round?
+        final boolean shown = (acct != null) && (!acct.getAccountOrParentIsInactive()) && (!acct.getHideOnHomePage());
+        if (shown != (item != null))
+            return true;
+
+        // Was the category renamed, moved or its currency changed?
+        return (item != null) && ((!item.getFullName().equals(acct.getFullAccountName())) || (item.getCurrencyType() != acct.getCurrencyType()));
+    }
+
+
+    /**
+     * Method to load the data again and then apply the budget values that were
+     * edited but not saved.
+     */
+    private void reloadKeepingEdits() {
+        // Save the edited values of every year
+        final List<EditJournal.Edit> edits = new ArrayList<EditJournal.Edit>();
+        final int count = this.budgetCategoriesList.getCategoryCount();
+        for (final BudgetValues values : this.loadedValues.values())
+            {
+            if (!values.isDirty())
+                continue;
+
+            for (int index = 0; index < count; index++)
+                {
+                final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(index);
+                if ((item == null) || (item.getAccount() == null))
+                    continue;
+
+                for (int month = 1; month <= 12; month++)
+                    {
+                    if (values.isChanged(index, month))
+                        edits.add(new EditJournal.Edit(values.getBudget().getKey(), item.getAccount().getUUID(), values.getYear(), month, values.get(index, month)));
+                    }
+                }
+            }
+
+        // Load the data then apply the edits again
+        this.window.setDataChanged(false);
+        this.LoadData();
+        this.applyEdits(edits);
+    }
+
+
+    /**
+     * Method to determine if any of the categories shown were added, deleted
+     * or changed in a way that changes the rows of the table.
+     * 
+     * @param changes - The changes made in Moneydance.
+     * @return boolean - true if the categories changed.
+     */
+    private boolean isStructureChanged(final BookChangeTracker.Changes changes) {
+        boolean structural = changes.structureChanged;
+        for (final Iterator<String> iter = changes.modifiedCategories.iterator(); (!structural) && (iter.hasNext()); )
+            structural = this.isCategoryChanged(iter.next());
+        return structural;
+    }
+
+
+    /**
+     * Method to build the category list and budget values for a budget and
+     * year. This does not change the table so it can be called from any thread.
+     * 
+     * @param budget - The budget to load.
+     * @param year - The budget year to load.
+     * @return LoadedData - The categories and budget values loaded.
+     */
+    private LoadedData buildData(final Budget budget, final int year) {
+        // Get the categories that can be budgeted
+        final BudgetCategoriesList categories = TableModel.loadCategories(this.book);
+
+        // Get the budget values for the categories
+        final BudgetValues values = BudgetValues.load(categories, budget, year, this.tracker.getVersion(budget.getKey()));
+        categories.setValues(values);
+
+        // Index the category names for searching
+        return new LoadedData(categories, values, new CategorySearchIndex(categories));
+    }
+
+
+    /**
+     * Method to build the list of categories that can be budgeted: the active
+     * income and expense categories that aren't hidden, under the special
+     * total rows. The batch initializer budgets the same categories. This
+     * does not change the table so it can be called from any thread.
+     * 
+     * @param book - The account book to list the categories of.
+     * @return BudgetCategoriesList - The categories without any budget values.
+     */
+    static BudgetCategoriesList loadCategories(final AccountBook book) {
         // Create a new budget categories list
-        this.budgetCategoriesList = new BudgetCategoriesList(this.book); 
+        final BudgetCategoriesList categories = new BudgetCategoriesList(book);
 
         // Create a special category for the Income - Expenses total row
-        this.budgetCategoriesList.add(Constants.UUID_OVERALL, "Income-Expenses", Account.AccountType.ROOT, 0);
+        categories.add(Constants.UUID_OVERALL, "Income-Expenses", Account.AccountType.ROOT, 0);
 
         // Add a special category to the table for "Income"
-        this.budgetCategoriesList.add(Constants.UUID_INCOME, "Income", Account.AccountType.INCOME, 1);
+        categories.add(Constants.UUID_INCOME, "Income", Account.AccountType.INCOME, 1);
 
         // Iterate through the accounts to find all active Income categories
         // Note that accounts and categories are the same, they are all Accounts. 
-        for (final Iterator<Account> iter = AccountUtil.getAccountIterator(this.context.getCurrentAccountBook()); iter.hasNext(); ) 
+        for (final Iterator<Account> iter = AccountUtil.getAccountIterator(book); iter.hasNext(); ) 
             {
             // Get the account 
             final Account acct = iter.next();
 
             // Go add category if it's the right type and if it's an income category
-            this.addIf(acct, Account.AccountType.INCOME);
+            TableModel.addIf(categories, acct, Account.AccountType.INCOME);
             }
 
         // Add a special category to the table for "Expenses"
-        this.budgetCategoriesList.add(Constants.UUID_EXPENSE, "Expenses", Account.AccountType.EXPENSE, 1);
+        categories.add(Constants.UUID_EXPENSE, "Expenses", Account.AccountType.EXPENSE, 1);
 
         // Iterate through the accounts to find all active Expense categories
-        for (final Iterator<Account> iter = AccountUtil.getAccountIterator(this.context.getCurrentAccountBook()); iter.hasNext(); ) 
+        for (final Iterator<Account> iter = AccountUtil.getAccountIterator(book); iter.hasNext(); ) 
             {
             // Get the account 
             final Account acct = iter.next();
 
             // Go add category if it's the right type and if it's an expense category
-            this.addIf(acct, Account.AccountType.EXPENSE);
+            TableModel.addIf(categories, acct, Account.AccountType.EXPENSE);
             }
+        return categories;
+    }
 
-        // Update the table
-        this.fireTableDataChanged();
+
+    /**
+     * Method to show newly loaded data in the table.
+     * 
+     * @param data - The categories and budget values loaded.
+     */
+    private void publish(final LoadedData data) {
+        // Any background load still running is now out of date
+        this.loadGeneration++;
+
+        // Swap in the new data
+        this.budgetCategoriesList = data.categories;
+        this.searchIndex = data.searchIndex;
+        this.loaded = true;
+
+        // Keep showing the categories that match the search
+        this.matchedRows = this.searchIndex.find(this.filterText);
+        this.buildVisibleRows();
+
+        // Values loaded for the old categories can't be used with the new ones
+        this.loadedValues.clear();
+        this.loadedValues.put(TableModel.valuesKey(data.values.getBudget(), data.values.getYear()), data.values);
+        this.setItemIndex(data.values.getIndex(), data.values.getVersion());
+        this.resetPeriodValues();
+
+        // Update the table, the column names include the year unless a calendar year is shown
+        if (this.isCalendarYear())
+            this.fireTableDataChanged();
+        else
+            this.fireTableStructureChanged();
+
+        // Report any problems found loading the categories now that this is on the event dispatch thread
+        for (final String error : data.categories.getErrors())
+            {
+            JOptionPane.showMessageDialog( this.window,
+            error,
+            "Error (Monthly Budget Editor)",
+            JOptionPane.ERROR_MESSAGE);
+            }
     }
 
 
@@ -171,14 +1008,12 @@ public class TableModel extends AbstractTableModel  {
      * it meets the right criteria - it must be active and not hidden as well
      * as being the proper type.
      * 
+     * @param categories - The budget categories list being loaded.
      * @param acct - The account to add 
      * @param type - The account type we're looking for,
      */
-    private void addIf(final Account acct, final AccountType type) 
+    private static void addIf(final BudgetCategoriesList categories, final Account acct, final AccountType type) 
     {
-    // Get the budget item list
-    final BudgetItemList budgetItemList = this.budget.getItemList();
-
     // Get the type of this account
     final AccountType acctType = acct.getAccountType();
 
@@ -189,92 +1024,523 @@ public class TableModel extends AbstractTableModel  {
         if ((!acct.getAccountOrParentIsInactive()) && (!acct.getHideOnHomePage()))
             {
             // Add this category
-            final BudgetCategoryItem item = this.budgetCategoriesList.add(acct);
-            if (item == null)
-                return;
+            categories.add(acct);
+            }
+        }
+    }
+
+
+    /**
+    * The categories and budget values loaded for a budget and year.
+    */
+    private static final class LoadedData {
+        // The budget categories list
+        final BudgetCategoriesList categories;
 
-            // If this is not a roll-up category then we need to get the current budget values for this category
-            if (!item.hasChildren())
+        // The budget values
+        final BudgetValues values;
+
+        // Index of the category names
+        final CategorySearchIndex searchIndex;
+
+        /**
+         * Constructor for the loaded data.
+         * 
+         * @param categories - The budget categories list.
+         * @param values - The budget values.
+         * @param searchIndex - Index of the category names.
+         */
+        LoadedData(final BudgetCategoriesList categories, final BudgetValues values, final CategorySearchIndex searchIndex) {
+            this.categories = categories;
+            this.values = values;
+            this.searchIndex = searchIndex;
+        }
+    }
+
+    /**
+     * Method to save the data from the table back to the Moneydance budget.
+     * 
+     * @return BudgetCompactor - The results of removing unused budget items
+     * or null if unused items are not removed when saving.
+     */
+    public BudgetCompactor saveData()
+    {
+        // In compact mode every category is checked so that existing budgets are compacted too
+        final boolean compact = this.window.compactStorage.isSelected();
+
+        // Index and writer for each budget saved
+        final Map<Budget, BudgetItemWriter> writers = new IdentityHashMap<Budget, BudgetItemWriter>();
+
+        // Get the number of items in the budget item list
+        final int count = this.budgetCategoriesList.getCategoryCount();
+
+        // Save each year that is shown or was edited in any budget
+        final List<BudgetValues> saved = this.getLoadedPeriodValues();
+        for (final BudgetValues budgetValues : saved)
+            {
+            final Budget budget = budgetValues.getBudget();
+            BudgetItemWriter writer = writers.get(budget);
+            if (writer == null)
                 {
-                for (int month = 1; month <= 12; month++)
+                // Edits to a budget that was removed since they were made can't be saved
+                if ((budget != this.budget) && (MyBudgetList.getInstance(this.book).getBudgetByKey(budget.getKey()) == null))
+                    {
+                    System.err.println("ERROR: Budget '"+budget.getName()+"' no longer exists, its edits can't be saved.");
+                    continue;
+                    }
+
+                // Index the existing budget items in case the budget was changed since it was loaded
+                writer = new BudgetItemWriter(budget, new BudgetItemIndex(budget), compact);
+                writers.put(budget, writer);
+                }
+
+            // Values edited before the budget changed pick up the changes that weren't edited
+            final int version = this.tracker.getVersion(budget.getKey());
+            if (budgetValues.getVersion() != version)
+                budgetValues.refreshUnchanged(this.getItemIndex(budget, version), version);
+
+            // Iterate through all BudgetCategoryItem(s)
+            for (int index = 0; index < count; index++)
+                {
+                final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(index);
+                if (item != null)
                     {
-                    // Find existing budget values for each month
-                    final BudgetItem i = budgetItemList.getBudgetItemForCategory(acct, new BudgetPeriod(DateUtil.getDate(this.year, month, 1), PeriodType.MONTH));
-                    if (i != null)
-                        item.setBudgetValueForMonth(this.window.getModel(), this.budgetCategoriesList, month, i.getAmount(), acctType);
+                    // Special categories do not have an account and are never saved
+                    if (item.getAccount() == null)
+                        continue;
+
+                    // Parent category values are the totals of their children and are never saved
+                    if (item.hasChildren())
+                        continue;
+
+                    // Get the values and the data changed flags for each month
+                    final long[] values = new long[13];
+                    final boolean[] changed = new boolean[12];
+                    boolean anyChanged = false;
+                    for (int month = 1; month <= 12; month++)
+                        {
+                        values[month] = budgetValues.get(index, month);
+                        changed[month - 1] = budgetValues.isChanged(index, month);
+                        anyChanged |= changed[month - 1];
+                        }
+
+                    // Write the months that changed
+                    if ((anyChanged) || (compact))
+                        writer.write(item.getAccount(), budgetValues.getYear(), values, changed);
+
+                    // Clear each BudgetItem data changed flag as it is processed
+                    for (int month = 1; month <= 12; month++)
+                        budgetValues.setChanged(index, month, false);
                     }
+                else
+                    System.err.println("ERROR: Item is null in saveData.");
                 }
             }
-        }
+
+        // Sync the changed budget items
+        for (final BudgetItemWriter writer : writers.values())
+            writer.flush();
+
+        // The values saved now match their budgets, values of a budget that was removed are dropped
+        for (final BudgetValues budgetValues : saved)
+            {
+            if (writers.containsKey(budgetValues.getBudget()))
+                budgetValues.setVersion(this.tracker.getVersion(budgetValues.getBudget().getKey()));
+            else
+                this.loadedValues.remove(TableModel.valuesKey(budgetValues.getBudget(), budgetValues.getYear()));
+            }
+
+        // Clear the global data changed flag
+        this.window.setDataChanged(false);
+
+        // The edits are saved so they no longer need to be recovered
+        this.clearJournal();
+
+        // Remove unused budget items if requested
+        if (this.window.purgeOnSave.isSelected())
+            return this.compactBudget();
+        return null;
+    }
+
+
+    /**
+     * Method to record an edited budget value of any year in the journal so
+     * that it can be recovered if Moneydance exits before it is saved.
+     * 
+     * @param values - The values of the year that was edited.
+     * @param item - The category item that was edited.
+     * @param month - The month that was edited (1...12).
+     */
+    private void journalEdit(final BudgetValues values, final BudgetCategoryItem item, final int month)
+    {
+        if ((this.journal != null) && (item.getAccount() != null))
+            this.journal.append(values.getBudget().getKey(), item.getAccount().getUUID(), values.getYear(), month, values.get(item.getRow(), month));
+    }
+
+
+    /**
+     * Method to get the edits that were not saved in a previous session.
+     * 
+     * @return List<EditJournal.Edit> - The edits in the order they were made.
+     */
+    public List<EditJournal.Edit> getJournaledEdits()
+    {
+        if (this.journal == null)
+            return Collections.emptyList();
+        return this.journal.read();
+    }
+
+
+    /**
+     * Method to apply the recovered edits to each budget that still exists.
+     * The edits are applied in one batch and the table is updated once.
+     * 
+     * @param edits - The recovered edits.
+     * @return int - The number of budget values that were changed.
+     */
+    public int applyEdits(final List<EditJournal.Edit> edits)
+    {
+        // Only the last edit of each cell matters
+        final Map<String, EditJournal.Edit> cells = new LinkedHashMap<String, EditJournal.Edit>();
+        for (final EditJournal.Edit edit : edits)
+            cells.put(edit.budgetKey+":"+edit.uuid+":"+edit.year+":"+edit.month, edit);
+
+        // Start the journal over with only the edits that still apply
+        this.clearJournal();
+
+        // Apply the edits without updating the table for each one
+        int changed = 0;
+        for (final EditJournal.Edit edit : cells.values())
+            {
+            final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItem(edit.uuid);
+            if ((item == null) || (item.hasChildren()) || (edit.month < 1) || (edit.month > 12))
+                continue;
+
+            // Edits to a budget that was removed can't be applied
+            final Budget budget = edit.budgetKey.equals(this.budget.getKey()) ? this.budget : MyBudgetList.getInstance(this.book).getBudgetByKey(edit.budgetKey);
+            if (budget == null)
+                continue;
+
+            // The year is loaded if it isn't loaded already
+            final BudgetValues values = (budget == this.budget) ? this.getYearValues(edit.year) : this.getValues(budget, edit.year);
+            if (values.get(item.getRow(), edit.month) != edit.value)
+                {
+                values.set(null, item.getRow(), edit.month, edit.value, item.getCategoryType());
+                values.setChanged(item.getRow(), edit.month, true);
+                this.journalEdit(values, item, edit.month);
+                changed++;
+                }
+            }
+
+        // Update the table once all of the edits have been applied
+        if (changed > 0)
+            {
+            this.window.setDataChanged(true);
+            this.fireTableDataChanged();
+            }
+        return changed;
+    }
+
+
+    /**
+     * Method to remove all edits from the journal once they have been saved
+     * or discarded.
+     */
+    public void clearJournal()
+    {
+        if (this.journal != null)
+            this.journal.clear();
+    }
+
+
+    /**
+     * Method to close the journal when the editor is closed.
+     */
+    public void close()
+    {
+        // Stop tracking changes
+        this.tracker.close();
+
+        if (this.journal != null)
+            this.journal.close();
+    }
+
+
+    /**
+     * Method to remove the zero valued and orphaned items from the budget.
+     * 
+     * @return BudgetCompactor - The results of the compaction.
+     */
+    public BudgetCompactor compactBudget()
+    {
+        final BudgetCompactor compactor = new BudgetCompactor(this.book);
+        compactor.compact(this.budget);
+        return compactor;
+    }
+
+
+    /**
+     * Method to find the zero valued and orphaned items in the budget without
+     * removing them so they can be confirmed first.
+     * 
+     * @return BudgetCompactor - The items found, call remove to remove them.
+     */
+    public BudgetCompactor scanBudget()
+    {
+        final BudgetCompactor compactor = new BudgetCompactor(this.book);
+        compactor.scan(this.budget);
+        return compactor;
+    }
+    
+    
+    /** 
+     * Method to return a BudgetCategoryItem object given the row from the table.
+     * 
+     * @param row - The row from the table.
+     * @return BudgetCategoryItem - The selected BudgetCategoryItem or null if there isn't one.
+     */
+    public BudgetCategoryItem getBudgetCategoryItem(final int row) {
+        return this.budgetCategoriesList.getCategoryItemByIndex(this.toCategoryRow(row));
+    }
+
+
+    /** 
+     * Method to show only the categories matching some text along with their
+     * parent categories. The categories themselves are not changed, only the
+     * rows that are shown.
+     * 
+     * @param text - The text to search for or an empty string to show all
+     * of the categories.
+     */
+    public void setFilter(final String text) {
+        this.filterText = text;
+        if (this.searchIndex == null)
+            return;
+
+        // Find the categories to show
+        this.matchedRows = this.searchIndex.find(text);
+        this.buildVisibleRows();
+
+        // Update the table
+        this.fireTableDataChanged();
+    }
+
+
+    /** 
+     * Method to work out which category rows are shown from the categories
+     * matching the search and the categories that are collapsed.
+     */
+    private void buildVisibleRows() {
+        // Show all of the matching rows if nothing is collapsed
+        if (this.collapsedCategories.isEmpty())
+            {
+            this.visibleRows = this.matchedRows;
+            return;
+            }
+
+        // Leave out the rows under collapsed categories
+        final int count = (this.matchedRows != null) ? this.matchedRows.length : this.budgetCategoriesList.getCategoryCount();
+        final int[] rows = new int[count];
+        int shown = 0;
+        int hiddenTo = -1;
+        for (int i = 0; i < count; i++)
+            {
+            final int categoryRow = (this.matchedRows != null) ? this.matchedRows[i] : i;
+            if (categoryRow <= hiddenTo)
+                continue;
+            rows[shown++] = categoryRow;
+
+            // Skip the children of a collapsed category
+            final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(categoryRow);
+            if (this.isCollapsed(item))
+                hiddenTo = this.budgetCategoriesList.getLastDescendantIndex(categoryRow);
+            }
+        this.visibleRows = Arrays.copyOf(rows, shown);
+    }
+
+
+    /** 
+     * Method to determine if the children of a category are hidden.
+     * 
+     * @param item - The category.
+     * @return boolean - true if the category has children and they are hidden.
+     */
+    private boolean isCollapsed(final BudgetCategoryItem item) {
+        return (item.hasChildren()) && (!this.collapsedCategories.isEmpty()) && (this.collapsedCategories.contains(TableModel.collapseKey(item)));
+    }
+
+
+    /** 
+     * @param item - The category.
+     * @return String - The key used to remember that the category is collapsed.
+     */
+    private static String collapseKey(final BudgetCategoryItem item) {
+        return (item.getAccount() != null) ? item.getAccount().getUUID() : item.getFullName();
+    }
+
+
+    /** 
+     * Method to determine if a row shown in the table can be expanded or
+     * collapsed.
+     * 
+     * @param row - The row in the table.
+     * @return boolean - true if the category in the row has children.
+     */
+    public boolean isCollapsible(final int row) {
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+        return (item != null) && (item.hasChildren());
     }
 
-    /**
-     * Method to save the data from the table back to the Moneydance budget.
+
+    /** 
+     * Method to hide or show the children of the category in a row. Only the
+     * rows of the children are removed from or added to the rows shown.
+     * 
+     * @param row - The row in the table.
      */
-    public void saveData()
-    {
-        // Get the budget item list
-        final BudgetItemList budgetItemList = this.budget.getItemList();
+    public void toggleCollapsed(final int row) {
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+        if ((item == null) || (!item.hasChildren()))
+            return;
 
-        // Get the number of items in the budget item list
-        final int count = this.budgetCategoriesList.getCategoryCount();
+        // Every row needs an entry in the rows shown before some can be hidden
+        if (this.visibleRows == null)
+            {
+            this.visibleRows = new int[this.budgetCategoriesList.getCategoryCount()];
+            for (int i = 0; i < this.visibleRows.length; i++)
+                this.visibleRows[i] = i;
+            }
 
-        // Iterate through all BudgetCategoryItem(s)
-        for (int index = 0; index < count; index++)
+        final int categoryRow = item.getRow();
+        final int lastRow = this.budgetCategoriesList.getLastDescendantIndex(categoryRow);
+        if (this.collapsedCategories.remove(TableModel.collapseKey(item)))
             {
-            final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(index);
-            if (item != null)
+            // Find the children to show, leaving out those that don't match the search
+            final int first = (this.matchedRows != null) ? TableModel.findFirst(this.matchedRows, categoryRow + 1) : categoryRow + 1;
+            final int end = (this.matchedRows != null) ? TableModel.findFirst(this.matchedRows, lastRow + 1) : lastRow + 1;
+            final int[] added = new int[end - first];
+            int count = 0;
+            int hiddenTo = -1;
+            for (int i = first; i < end; i++)
                 {
-                // Iterate through all months
-                for (int month = 1; month <= 12; month++)
-                    {
-                    // If the data changed flag for the month in BudgetCategoryItems is true process that month 
-                    if (item.getDataChangedForMonth(month))
-                        {
-                        final BudgetItem i = budgetItemList.getBudgetItemForCategory(item.getAccount(), new BudgetPeriod(DateUtil.getDate(this.year, month, 1), PeriodType.MONTH));
-                        if (i != null)
-                            {
-                            // Save the new budget at the old BudgetItem
-                            i.setAmount(item.getBudgetValueForMonth(month));
-                            i.syncItem();
-                            }
-                        else
-                            {
-                            // Create a new BudgetItem and save the new budget
-                            // If value to write is 0 and there is no prior budget for this period then we don't need to create one
-                            if (item.getBudgetValueForMonth(month) != 0)
-                                {
-                                final BudgetItem newItem = this.budget.createItem();
-                                newItem.setTransferAccount(item.getAccount());
-                                newItem.setIntervalStartDate(DateUtil.getDate(this.year, month, 1));
-                                newItem.setIntervalEndDate(DateUtil.lastDayInMonth(DateUtil.getDate(this.year, month, 1)));
-                                newItem.setAmount(item.getBudgetValueForMonth(month));
-                                newItem.setInterval(BudgetItem.INTERVAL_MONTHLY);
-                                newItem.syncItem();
-                                }
-                            }
-                        // Clear each BudgetItem data changed flag as it is processed
-                        item.setDataChangedForMonth(month, false);
-                        }
-                    }
+                final int childRow = (this.matchedRows != null) ? this.matchedRows[i] : i;
+                if (childRow <= hiddenTo)
+                    continue;
+                added[count++] = childRow;
+
+                // Children of collapsed children stay hidden
+                final BudgetCategoryItem child = this.budgetCategoriesList.getCategoryItemByIndex(childRow);
+                if (this.isCollapsed(child))
+                    hiddenTo = this.budgetCategoriesList.getLastDescendantIndex(childRow);
                 }
-            else
-                System.err.println("ERROR: Item is null in saveData.");
+
+            // Insert the children after the category
+            final int[] rows = new int[this.visibleRows.length + count];
+            System.arraycopy(this.visibleRows, 0, rows, 0, row + 1);
+            System.arraycopy(added, 0, rows, row + 1, count);
+            System.arraycopy(this.visibleRows, row + 1, rows, row + 1 + count, this.visibleRows.length - row - 1);
+            this.visibleRows = rows;
+            if (count > 0)
+                this.fireTableRowsInserted(row + 1, row + count);
             }
+        else
+            {
+            this.collapsedCategories.add(TableModel.collapseKey(item));
 
-        // Clear the global data changed flag
-        this.window.setDataChanged(false);
+            // The children shown are the rows after the category up to the first row after the last child
+            final int end = TableModel.findFirst(this.visibleRows, lastRow + 1);
+
+            // Remove them
+            final int count = end - (row + 1);
+            final int[] rows = new int[this.visibleRows.length - count];
+            System.arraycopy(this.visibleRows, 0, rows, 0, row + 1);
+            System.arraycopy(this.visibleRows, end, rows, row + 1, this.visibleRows.length - end);
+            this.visibleRows = rows;
+            if (count > 0)
+                this.fireTableRowsDeleted(row + 1, end - 1);
+            }
+
+        // Show the category's new mark
+        this.fireTableRowsUpdated(row, row);
     }
-    
-    
+
+
     /** 
-     * Method to return a BudgetCategoryItem object given the row from the table.
+     * Method to find the first of a sorted list of rows that is not before a
+     * row.
      * 
-     * @param row - The row from the table which is the index into the category items.
-     * @return BudgetCategoryItem - The selected BudgetCategoryItem or null if there isn't one.
+     * @param rows - The sorted rows.
+     * @param row - The row to look for.
+     * @return int - The index of the first row not before the row passed or
+     * the number of rows if they're all before it.
      */
-    public BudgetCategoryItem getBudgetCategoryItem(final int row) {
-        return this.budgetCategoriesList.getCategoryItemByIndex(row);
+    private static int findFirst(final int[] rows, final int row) {
+        final int i = Arrays.binarySearch(rows, row);
+        return (i >= 0) ? i : -(i + 1);
+    }
+
+
+    /** 
+     * Method to get the row in the budget categories list for a row shown in
+     * the table.
+     * 
+     * @param row - The row in the table.
+     * @return int - The row in the budget categories list or -1 if there isn't one.
+     */
+    int toCategoryRow(final int row) {
+        if (this.visibleRows == null)
+            return row;
+        return ((row >= 0) && (row < this.visibleRows.length)) ? this.visibleRows[row] : -1;
+    }
+
+
+    /** 
+     * Method to get the row shown in the table for a row in the budget
+     * categories list.
+     * 
+     * @param categoryRow - The row in the budget categories list.
+     * @return int - The row in the table or -1 if the category isn't shown.
+     */
+    int toTableRow(final int categoryRow) {
+        if (this.visibleRows == null)
+            return categoryRow;
+        final int row = Arrays.binarySearch(this.visibleRows, categoryRow);
+        return (row >= 0) ? row : -1;
+    }
+
+
+    /** 
+     * Method to notify the table that a budget value of a category changed
+     * if the category is shown.
+     * 
+     * @param categoryRow - The row in the budget categories list.
+     * @param column - The column that changed.
+     */
+    void fireCategoryUpdated(final int categoryRow, final int column) {
+        final int row = this.toTableRow(categoryRow);
+        if (row != -1)
+            this.fireTableCellUpdated(row, column);
+    }
+
+
+    /** 
+     * Method to notify the table that a budget value of a category changed
+     * if the category and month are shown. The row total is updated with it.
+     * 
+     * @param values - The values that changed.
+     * @param categoryRow - The row in the budget categories list.
+     * @param month - The month that changed (1...12).
+     */
+    void fireValueUpdated(final BudgetValues values, final int categoryRow, final int month) {
+        final int column = this.getColumnOf(values, month);
+        if (column != -1)
+            {
+            this.fireCategoryUpdated(categoryRow, column);
+
+            // The same month a year later shows this value as the budget of the year before
+            if ((this.showReference) && (column + 12 <= this.monthCount))
+                this.fireCategoryUpdated(categoryRow, column + 12);
+            }
     }
 
     
@@ -306,7 +1572,7 @@ public class TableModel extends AbstractTableModel  {
      */
     public Long getLongValueAt(final int row, final int column) {
         // Get the category item
-        final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(row);
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
         if (item != null)
             {
             // Category names can't be returned as a Long
@@ -314,13 +1580,7 @@ public class TableModel extends AbstractTableModel  {
                 return 0l;
             // Budget values and totals
             else 
-                {
-                if (column < 13)
-                    return (item.getBudgetValueForMonth(column));
-                else
-                    // Add spacing to right end of table data
-                    return (item.getBudgetValueForMonth(column));
-                }
+                return (this.getCategoryValue(item.getRow(), column));
             }
         else
             {
@@ -342,12 +1602,14 @@ public class TableModel extends AbstractTableModel  {
 
     
     /** 
-     * Method to get the number of rows (number of categories).
+     * Method to get the number of rows (number of categories shown).
      * 
      * @return int - Number of rows.
      */
     @Override
     public int getRowCount() {
+        if (this.visibleRows != null)
+            return this.visibleRows.length;
         return this.budgetCategoriesList.getCategoryCount();
     }
 
@@ -355,7 +1617,7 @@ public class TableModel extends AbstractTableModel  {
     /** 
      * Method to get the column name.
      * 
-     * @param column - The column index [0...13].
+     * @param column - The column index [0...month count + 1].
      * @return String - The column name.
      */
     @Override
@@ -372,7 +1634,8 @@ public class TableModel extends AbstractTableModel  {
      */
     @Override
     public Class<?> getColumnClass(final int column) {
-        return this.getValueAt(0, column).getClass();
+        // Category names and the formatted budget values are all strings
+        return String.class;
     }
 
     
@@ -385,9 +1648,9 @@ public class TableModel extends AbstractTableModel  {
      */
     @Override
     public boolean isCellEditable(final int row, final int column) {
-        if ((column > 0) && (column <= 12)) 
+        if ((column > 0) && (column <= this.monthCount)) 
             {
-            final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(row);
+            final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
             if (item != null)
                 {
                 if (!item.hasChildren()) 
@@ -415,32 +1678,26 @@ public class TableModel extends AbstractTableModel  {
     @Override
     public Object getValueAt(final int row, final int column) {
         // Get the category item
-        final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(row);
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
         if (item != null)
             {
-            // Get the selected currency type
-            CurrencyType toType;
-            if (this.window.useCategoryCurrency.isSelected())
-                toType = item.getCurrencyType();                    // Using Category currency
-            else
-                toType = this.book.getCurrencies().getBaseType();   // Using Base currency
-
             // Category names
             if ( column == 0)  
                 {
                 // Display the category indented per the indent level
-                return (item.getIndentLevel() == 0) ? 
-                    "    "+item.getShortName() : 
-                    String.format("    %1$" + item.getIndentLevel() * 6 + "s%2$s", "", item.getShortName());
+                return item.getLabel(this.isCollapsed(item));
                 }
-            // Budget values and totals
+            // Budget values and totals are formatted once and then reused until they change
             else 
                 {
-                if (column < 13)
-                    return (toType.formatFancy(CurrencyUtil.convertValue(item.getBudgetValueForMonth(column), item.getCurrencyType(), toType), this.separator));
-                else
+                final String[] cached = this.getDisplayRow(row);
+                if (cached[column] == null)
+                    {
                     // Add spacing to right end of table data
-                    return (toType.formatFancy(CurrencyUtil.convertValue(item.getBudgetValueForMonth(column), item.getCurrencyType(), toType), this.separator)+"    ");
+                    final String text = this.getDisplayCurrencyAt(row).formatFancy(this.getDisplayAmountAt(row, column), this.separator);
+                    cached[column] = (column <= this.monthCount) ? text : text+"    ";
+                    }
+                return cached[column];
                 }
             }
         else
@@ -449,6 +1706,177 @@ public class TableModel extends AbstractTableModel  {
             return null;
             }
     }
+
+
+    /** 
+     * Method to get a budget value or total converted to the currency it is
+     * displayed in.
+     * 
+     * @param row - The row in the table.
+     * @param column - The column in the table [1...month count + 1].
+     * @return long - The converted value.
+     */
+    public long getDisplayAmountAt(final int row, final int column) {
+        this.getDisplayRow(row);
+        if (!this.amountCached[row][column])
+            {
+            final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+            if (item == null)
+                return 0;
+
+            this.displayAmounts[row][column] = CurrencyUtil.convertValue(this.getCategoryValue(item.getRow(), column), item.getCurrencyType(), this.getDisplayCurrencyAt(row));
+            this.amountCached[row][column] = true;
+            }
+        return this.displayAmounts[row][column];
+    }
+
+
+    /** 
+     * Method to get the budget value of the year before for a month converted
+     * to the currency it is displayed in. The values are kept once converted
+     * so showing them again reads them from the cache.
+     * 
+     * @param row - The row in the table.
+     * @param column - A month column in the table [1...month count].
+     * @return long - The converted value.
+     */
+    public long getReferenceAmountAt(final int row, final int column) {
+        this.getDisplayRow(row);
+        if (!this.referenceCached[row][column])
+            {
+            final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+            if (item == null)
+                return 0;
+
+            final long amount = this.getReferenceValuesAt(column).get(item.getRow(), this.getMonthAt(column));
+            final CurrencyType displayType = this.getDisplayCurrency(item);
+            this.referenceAmounts[row][column] = (displayType != item.getCurrencyType()) ? CurrencyUtil.convertValue(amount, item.getCurrencyType(), displayType) : amount;
+            this.referenceCached[row][column] = true;
+            }
+        return this.referenceAmounts[row][column];
+    }
+
+
+    /** 
+     * Method to get the currency that the values of a row are displayed in.
+     * 
+     * @param row - The row in the table.
+     * @return CurrencyType - The category currency or the base currency.
+     */
+    public CurrencyType getDisplayCurrencyAt(final int row) {
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+        if (item != null)
+            return this.getDisplayCurrency(item);
+        return this.baseType;                     // Using Base currency
+    }
+
+
+    /** 
+     * Method to get the currency that the values of a category are displayed in.
+     * 
+     * @param item - The category.
+     * @return CurrencyType - The category currency or the base currency.
+     */
+    CurrencyType getDisplayCurrency(final BudgetCategoryItem item) {
+        if (this.useCategoryCurrency)
+            return item.getCurrencyType();        // Using Category currency
+        return this.baseType;                     // Using Base currency
+    }
+
+
+    /** 
+     * @return char - The decimal separator values are displayed with.
+     */
+    char getSeparator() {
+        return this.separator;
+    }
+
+
+    /** 
+     * Method to determine if the value displayed at a specific row and column
+     * is negative.
+     * 
+     * @param row - The row in the table.
+     * @param column - The column in the table.
+     * @return boolean - Returns true if the value is negative, false otherwise.
+     */
+    public boolean isNegativeAt(final int row, final int column) {
+        // Category names are never negative
+        if (column == 0)
+            return false;
+        return (this.getDisplayAmountAt(row, column) < 0);
+    }
+
+
+    /** 
+     * Method to get the formatted values for a row, allocating the cache if
+     * needed.
+     * 
+     * @param row - The row in the table.
+     * @return String[] - The formatted values for the row indexed by column.
+     */
+    private String[] getDisplayRow(final int row) {
+        // Allocate the cache for all of the rows if the rows have changed
+        final int count = this.getRowCount();
+        if ((this.displayValues == null) || (this.displayValues.length != count))
+            {
+            this.displayValues = new String[count][];
+            this.displayAmounts = new long[count][];
+            this.amountCached = new boolean[count][];
+            this.referenceAmounts = new long[count][];
+            this.referenceCached = new boolean[count][];
+            }
+
+        // Allocate the row the first time it's displayed
+        if (this.displayValues[row] == null)
+            {
+            this.displayValues[row] = new String[this.columnNames.length];
+            this.displayAmounts[row] = new long[this.columnNames.length];
+            this.amountCached[row] = new boolean[this.columnNames.length];
+            this.referenceAmounts[row] = new long[this.columnNames.length];
+            this.referenceCached[row] = new boolean[this.columnNames.length];
+            }
+        return this.displayValues[row];
+    }
+
+
+    /** 
+     * Method to notify the table of changes. The cached values of the cells
+     * that changed are removed before the table is notified.
+     * 
+     * @param e - The event describing the change.
+     */
+    @Override
+    public void fireTableChanged(final TableModelEvent e) {
+        if ((this.displayValues != null) && (e.getType() == TableModelEvent.UPDATE) && (e.getFirstRow() >= 0) && (e.getLastRow() < this.displayValues.length))
+            {
+            // Only some of the rows were updated
+            for (int row = e.getFirstRow(); row <= e.getLastRow(); row++)
+                {
+                final String[] cached = this.displayValues[row];
+                if (cached == null)
+                    continue;
+
+                if (e.getColumn() == TableModelEvent.ALL_COLUMNS)
+                    this.displayValues[row] = null;
+                else
+                    {
+                    // The row total changes along with the month
+                    final int totals = this.monthCount + 1;
+                    cached[e.getColumn()] = null;
+                    cached[totals] = null;
+                    this.amountCached[row][e.getColumn()] = false;
+                    this.amountCached[row][totals] = false;
+                    this.referenceCached[row][e.getColumn()] = false;
+                    }
+                }
+            }
+        else
+            // Rows were added or removed or everything changed
+            this.displayValues = null;
+
+        super.fireTableChanged(e);
+    }
  
     
     /** 
@@ -460,96 +1888,29 @@ public class TableModel extends AbstractTableModel  {
      */
     @Override    
     public void setValueAt(final Object value, final int row, final int column) {
-        // Calculated long value to store
-        Long lv;
-
         // Get the item to update
-        final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(row);
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
         if (item != null)
             {
             // If the object passed is a string - Usually when a budget value has been edited.
-            // We need to parse the string.
+            // The string is in the currency the row is displayed in.
             if (value instanceof String)
                 {
-                CurrencyType cType = item.getCurrencyType();
-                String strPrefix = cType.getPrefix();
-                String strSuffix = cType.getSuffix();
-                int decPlaces = cType.getDecimalPlaces();
-                String strValue = (String)value;
-
-                // Remove the currency prefix
-                if (!strPrefix.equals("")) 
-                    {
-                    if (strValue.length() >= strPrefix.length())
-                        {
-                        String strLeft = strValue.substring(0, strPrefix.length());
-                        if (strLeft.equals(strPrefix))
-                            strValue = strValue.substring(strPrefix.length());
-                        }
-                    }
-
-                // Remove the currency suffix
-                if (!strSuffix.equals("")) 
-                    {
-                    if (strValue.length() >= strSuffix.length())
-                        {
-                        String strRight = strValue.substring(strValue.length()-strSuffix.length());
-                        if (strRight.equals(strSuffix))
-                            strValue = strValue.substring(0,strValue.length()-strSuffix.length());
-                        }
-                    }
-
-                // Remove anything left other than a digit, comma, period or -
-                strValue = strValue.replaceAll("[^\\d-,.]", "");
-
-                // Search for a decimal point (could be either a period or a comma)
-                // and must be within the number of decimal places specified for
-                // the currency.
-                int decimalIndex = decPlaces;
-                if (decimalIndex != 0)
+                final long amount = this.parseInput(row, (String)value);
+                if (amount == CurrencyParser.INVALID)
                     {
-                    // Search backward through the string looking for a decimal point.
-                    for (int i = strValue.length() - 1; i >= 0; i--, decimalIndex--)
-                        {
-                        // If we don't find a decimal point within the decimal places allowed
-                        // assume there isn't one and any other periods or commas are digit
-                        // separators so we ignore them.
-                        if (decimalIndex == -1)
-                            {
-                            decimalIndex = 2;
-                            break;
-                            }
-
-                        // If this character a decimal point (either a period or comma)
-                        char c = strValue.charAt(i);
-                        if ((c == '.') || (c == ','))
-                            break;
-
-                        // If we didn't find a decimal point within the length of the string  
-                        if (i == 0)
-                            {
-                            decimalIndex = 2;
-                            break;
-                            }
-                        }
+                    System.err.println("ERROR: Invalid amount passed to setValueAt: "+value);
+                    return;
                     }
 
-                // Now remove the decimal point and any digit separators
-                strValue = strValue.replaceAll("[^\\d-]", "");
-
-                // Convert the string to a long
-                lv = Long.parseLong(strValue);
-
-                // Ensure the value contains the correct number of digits for the decimal places
-                for (int i = 0; i < decimalIndex; i++)
-                    lv = lv * 10;
-
-                // If not using the category currency, then we need to convert the value
-                // to the category currency before setting it
-                if (!this.window.useCategoryCurrency.isSelected())
-                    lv = CurrencyUtil.convertValue(lv, this.book.getCurrencies().getBaseType(), item.getCurrencyType());
+                // Convert the value to the category currency if needed and save it
+                this.setDisplayAmountAt(row, column, amount);
+                return;
                 } // value is instanceof String
-            else if (value instanceof Long)
+
+            // Calculated long value to store
+            final Long lv;
+            if (value instanceof Long)
                 {
                 // Longs are passed in during copy operations and do not need to be parsed or converted
                 // to another currency.
@@ -561,23 +1922,236 @@ public class TableModel extends AbstractTableModel  {
                 return;
                 }
 
-            // Update the data only if the new value is different than the old value
-            if (item.getBudgetValueForMonth(column) != lv)
+            // Save the new value
+            this.setBudgetValue(this.getValuesAt(column), item, this.getMonthAt(column), lv);
+            }
+        else
+            System.err.println("ERROR: Item is null in setValueAt.");
+    }
+
+
+    /** 
+     * Method to set the budget value of a category for the month shown in a
+     * column whether or not the category is shown in the table.
+     * 
+     * @param item - The category to update.
+     * @param column - The month column to update [1...month count].
+     * @param value - The new budget value in the category currency.
+     */
+    public void setBudgetValueAt(final BudgetCategoryItem item, final int column, final long value) {
+        this.setBudgetValue(this.getValuesAt(column), item, this.getMonthAt(column), value);
+    }
+
+
+    /** 
+     * Method to set the budget value of a category for a month of any year.
+     * 
+     * @param values - The values of the year to update.
+     * @param item - The category to update.
+     * @param month - The month to update (1...12).
+     * @param value - The new budget value in the category currency.
+     */
+    private void setBudgetValue(final BudgetValues values, final BudgetCategoryItem item, final int month, final long value) {
+        // Update the data only if the new value is different than the old value
+        final int categoryRow = item.getRow();
+        if (values.get(categoryRow, month) != value)
+            {
+            // In a batch the parent categories are updated when the batch ends
+            if (this.batching)
                 {
+                values.setWithoutRollUp(categoryRow, month, value);
+                if (!this.batchValues.contains(values))
+                    this.batchValues.add(values);
+                }
+            else
                 // Set the budget value for the month
-                item.setBudgetValueForMonth(this.window.getModel(), this.budgetCategoriesList, column, lv, item.getCategoryType());
-        
-                // Mark this cell as changed so we know what to update
-                item.setDataChangedForMonth(column, true);
+                values.set(this, categoryRow, month, value, item.getCategoryType());
+    
+            // Mark this cell as changed so we know what to update
+            values.setChanged(categoryRow, month, true);
+
+            // Record the edit in case Moneydance exits before it is saved
+            this.journalEdit(values, item, month);
+
+            // Set the global data changed flag as well
+            this.window.setDataChanged(true);
 
-                // Set the global data changed flag as well
-                this.window.setDataChanged(true);
+            // Notify all listeners that the value of the cell has been updated.
+            if (!this.batching)
+                this.fireValueUpdated(values, categoryRow, month);
+            }
+    }
+
+
+    /** 
+     * Method to write budget values as tab separated text, one line per
+     * category, in the currency they're displayed in. The category column
+     * holds the full category name so the hierarchy is kept. The text is
+     * written in one pass from the budget values into a buffer sized for it
+     * up front.
+     * 
+     * @param categoryRows - The rows in the budget categories list to write.
+     * @param columns - The columns to write in order [0...month count + 1].
+     * @param header - true to write the column names first.
+     * @return String - The tab separated text.
+     */
+    public String toTabSeparated(final int[] categoryRows, final int[] columns, final boolean header) {
+        // Longest amount: sign, 19 digits, decimal point and tab
+        final int amountWidth = 22;
+        int capacity = header ? columns.length * 12 : 0;
+        for (final int categoryRow : categoryRows)
+            capacity += (columns.length * amountWidth) + this.budgetCategoriesList.getCategoryItemByIndex(categoryRow).getFullName().length();
+        final StringBuilder sb = new StringBuilder(capacity);
 
-                // Notify all listeners that the value of the cell at [row, column] has been updated.
-                this.fireTableCellUpdated(row, column);
+        // Column names
+        if (header)
+            {
+            for (int i = 0; i < columns.length; i++)
+                {
+                if (i > 0)
+                    sb.append('\t');
+                sb.append(this.columnNames[columns[i]]);
                 }
+            sb.append('\n');
             }
-        else
-            System.err.println("ERROR: Item is null in setValueAt.");
+
+        // One line per category
+        for (final int categoryRow : categoryRows)
+            {
+            final BudgetCategoryItem item = this.budgetCategoriesList.getCategoryItemByIndex(categoryRow);
+            final CurrencyType displayType = this.getDisplayCurrency(item);
+            for (int i = 0; i < columns.length; i++)
+                {
+                if (i > 0)
+                    sb.append('\t');
+                if (columns[i] == 0)
+                    sb.append(item.getFullName());
+                else
+                    {
+                    // Convert the value to the displayed currency if needed
+                    long amount = this.getCategoryValue(categoryRow, columns[i]);
+                    if (item.getCurrencyType() != displayType)
+                        amount = CurrencyUtil.convertValue(amount, item.getCurrencyType(), displayType);
+                    this.appendAmount(sb, amount, displayType.getDecimalPlaces());
+                    }
+                }
+            sb.append('\n');
+            }
+        return sb.toString();
+    }
+
+
+    /** 
+     * Method to write an amount as a plain number with the decimal separator
+     * of the locale and no currency symbols or digit grouping so that
+     * spreadsheets read it as a number.
+     * 
+     * @param sb - The buffer to write to.
+     * @param amount - The amount.
+     * @param decimalPlaces - The decimal places of the amount's currency.
+     */
+    private void appendAmount(final StringBuilder sb, long amount, final int decimalPlaces) {
+        if (amount < 0)
+            {
+            sb.append('-');
+            amount = -amount;
+            }
+        long scale = 1;
+        for (int i = 0; i < decimalPlaces; i++)
+            scale *= 10;
+        sb.append(amount / scale);
+        if (decimalPlaces > 0)
+            {
+            // Write the fraction with its leading zeros
+            final long fraction = amount % scale;
+            sb.append(this.separator);
+            for (long digit = scale / 10; (digit > 1) && (digit > fraction); digit /= 10)
+                sb.append('0');
+            sb.append(fraction);
+            }
+    }
+
+
+    /** 
+     * Method to parse a budget value typed into a row, in the currency the
+     * row is displayed in. An empty value is a budget of 0.
+     * 
+     * @param row - The row in the table.
+     * @param text - The text typed.
+     * @return long - The value or CurrencyParser.INVALID if the text isn't an amount.
+     */
+    public long parseInput(final int row, final String text) {
+        if (CurrencyParser.isBlank(text, 0, text.length()))
+            return 0;
+        return this.getParser(this.getDisplayCurrencyAt(row)).parse(text);
+    }
+
+
+    /** 
+     * Method to get the parser for amounts in a currency. Parsers are kept
+     * for reuse.
+     * 
+     * @param type - The currency.
+     * @return CurrencyParser - The parser for the currency.
+     */
+    CurrencyParser getParser(final CurrencyType type) {
+        CurrencyParser parser = this.parsers.get(type);
+        if (parser == null)
+            {
+            parser = new CurrencyParser(type);
+            this.parsers.put(type, parser);
+            }
+        return parser;
+    }
+
+
+    /** 
+     * Method to set a budget value entered in the currency the row is
+     * displayed in, converting it to the category currency if needed.
+     * 
+     * @param row - The row in the table.
+     * @param column - The month column to set [1...month count].
+     * @param value - The new budget value in the displayed currency.
+     */
+    public void setDisplayAmountAt(final int row, final int column, final long value) {
+        final BudgetCategoryItem item = this.getBudgetCategoryItem(row);
+        if (item == null)
+            return;
+
+        // Convert the value to the category currency
+        final CurrencyType displayType = this.getDisplayCurrencyAt(row);
+        final long amount = (displayType != item.getCurrencyType()) ? CurrencyUtil.convertValue(value, displayType, item.getCurrencyType()) : value;
+        this.setBudgetValue(this.getValuesAt(column), item, this.getMonthAt(column), amount);
+    }
+
+
+    /** 
+     * Method to start a batch of changes to the budget values. The values of
+     * the parent categories are worked out once and the table is updated once
+     * when the batch ends rather than after each change.
+     */
+    public void beginBatch() {
+        this.batching = true;
+        this.batchValues.clear();
+    }
+
+
+    /** 
+     * Method to end a batch of changes to the budget values, rolling the
+     * changes up to the parent categories and updating the table.
+     */
+    public void endBatch() {
+        this.batching = false;
+        if (this.batchValues.isEmpty())
+            return;
+
+        // Work out the parent category values of each year changed in one pass
+        for (final BudgetValues values : this.batchValues)
+            values.rollUp();
+        this.batchValues.clear();
+
+        // Update every row shown without losing the selection
+        if (this.getRowCount() > 0)
+            this.fireTableRowsUpdated(0, this.getRowCount() - 1);
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+import java.util.Arrays;
+
+import com.infinitekind.moneydance.model.Account;
+
+/**
+* Tests of BudgetValues.rollUp and BudgetValues.difference. The categories
+* are added without accounts so no Moneydance account book is needed.
+*
+* @author  Jerry Jones
+*/
+final class BudgetValuesTest {
+    // Rows of the categories built by buildCategories
+    private static final int OVERALL = 0;
+    private static final int INCOME = 1;
+    private static final int SALARY = 2;
+    private static final int EXPENSES = 3;
+    private static final int FOOD = 4;
+    private static final int GROCERIES = 5;
+    private static final int DINING = 6;
+    private static final int RENT = 7;
+
+    private BudgetValuesTest() {
+    }
+
+
+    /** 
+     * Run the tests.
+     * 
+     * @param args - Not used.
+     */
+    public static void main(final String[] args) {
+        BudgetValuesTest.testParents();
+        BudgetValuesTest.testRollUp();
+        BudgetValuesTest.testRollUpMatchesSet();
+        BudgetValuesTest.testDifference();
+        Check.finish("BudgetValuesTest");
+    }
+
+
+    /** 
+     * Build the categories the way the editor lists them, with the overall
+     * totals first and each category followed by the categories under it.
+     * 
+     * @return BudgetCategoriesList - The categories.
+     */
+    private static BudgetCategoriesList buildCategories() {
+        final BudgetCategoriesList categories = new BudgetCategoriesList(null);
+        categories.add(Constants.UUID_OVERALL, "Income-Expenses", Account.AccountType.ROOT, null, 0, true);
+        categories.add(Constants.UUID_INCOME, "Income", Account.AccountType.INCOME, null, 1, true);
+        categories.add("salary", "Salary", Account.AccountType.INCOME, null, 2, false);
+        categories.add(Constants.UUID_EXPENSE, "Expenses", Account.AccountType.EXPENSE, null, 1, true);
+        categories.add("food", "Food", Account.AccountType.EXPENSE, null, 2, true);
+        categories.add("groceries", "Food:Groceries", Account.AccountType.EXPENSE, null, 3, false);
+        categories.add("dining", "Food:Dining", Account.AccountType.EXPENSE, null, 3, false);
+        categories.add("rent", "Rent", Account.AccountType.EXPENSE, null, 2, false);
+        return categories;
+    }
+
+
+    /** 
+     * Check the categories roll up to the parents expected by the other tests.
+     */
+    private static void testParents() {
+        final BudgetCategoriesList categories = BudgetValuesTest.buildCategories();
+        final int[] parents = { -1, BudgetValuesTest.OVERALL, BudgetValuesTest.INCOME, BudgetValuesTest.OVERALL, BudgetValuesTest.EXPENSES, BudgetValuesTest.FOOD, BudgetValuesTest.FOOD, BudgetValuesTest.EXPENSES };
+        for (int row = 0; row < parents.length; row++)
+            Check.equal("parent of row "+row, parents[row], categories.getCategoryItemByIndex(row).getParentRow());
+    }
+
+
+    /** 
+     * Set the values of the categories that are budgeted without rolling
+     * them up. Month m of each category is a multiple of m.
+     * 
+     * @param values - The values to set.
+     */
+    private static void setLeaves(final BudgetValues values) {
+        for (int month = 1; month <= 12; month++)
+            {
+            values.setWithoutRollUp(BudgetValuesTest.SALARY, month, 5000 * month);
+            values.setWithoutRollUp(BudgetValuesTest.GROCERIES, month, 400 * month);
+            values.setWithoutRollUp(BudgetValuesTest.DINING, month, 100 * month);
+            values.setWithoutRollUp(BudgetValuesTest.RENT, month, 2000 * month);
+            }
+    }
+
+
+    /** 
+     * Check rollUp works out the roll-up categories and totals from the
+     * categories under them, subtracting expenses from the overall totals.
+     */
+    private static void testRollUp() {
+        final BudgetCategoriesList categories = BudgetValuesTest.buildCategories();
+        final BudgetValues values = new BudgetValues(categories, null, 2024, null, 0);
+        BudgetValuesTest.setLeaves(values);
+
+        // Stale roll-up values are replaced rather than added to
+        values.setWithoutRollUp(BudgetValuesTest.FOOD, 1, 999);
+        values.setWithoutRollUp(BudgetValuesTest.OVERALL, 1, 999);
+        values.rollUp();
+
+        for (int month = 1; month <= 12; month++)
+            {
+            Check.equal("salary month "+month, 5000 * month, values.get(BudgetValuesTest.SALARY, month));
+            Check.equal("income month "+month, 5000 * month, values.get(BudgetValuesTest.INCOME, month));
+            Check.equal("food month "+month, 500 * month, values.get(BudgetValuesTest.FOOD, month));
+            Check.equal("expenses month "+month, 2500 * month, values.get(BudgetValuesTest.EXPENSES, month));
+            Check.equal("overall month "+month, 2500 * month, values.get(BudgetValuesTest.OVERALL, month));
+            }
+
+        // Totals of months 1 to 12 are 78 times the value of month 1
+        Check.equal("salary total", 5000 * 78, values.get(BudgetValuesTest.SALARY, 13));
+        Check.equal("food total", 500 * 78, values.get(BudgetValuesTest.FOOD, 13));
+        Check.equal("expenses total", 2500 * 78, values.get(BudgetValuesTest.EXPENSES, 13));
+        Check.equal("overall total", 2500 * 78, values.get(BudgetValuesTest.OVERALL, 13));
+
+        // Rolling up again changes nothing
+        final long[] before = values.copyValues();
+        values.rollUp();
+        Check.isTrue("rollUp is repeatable", Arrays.equals(before, values.copyValues()));
+    }
+
+
+    /** 
+     * Check a batch rolled up once gives the same values as setting each
+     * value and rolling it up as it's set.
+     */
+    private static void testRollUpMatchesSet() {
+        final BudgetCategoriesList categories = BudgetValuesTest.buildCategories();
+        final BudgetValues batched = new BudgetValues(categories, null, 2024, null, 0);
+        BudgetValuesTest.setLeaves(batched);
+        batched.rollUp();
+
+        final BudgetValues single = new BudgetValues(categories, null, 2024, null, 0);
+        for (int month = 1; month <= 12; month++)
+            {
+            single.set(null, BudgetValuesTest.SALARY, month, 5000 * month, Account.AccountType.INCOME);
+            single.set(null, BudgetValuesTest.GROCERIES, month, 400 * month, Account.AccountType.EXPENSE);
+            single.set(null, BudgetValuesTest.DINING, month, 100 * month, Account.AccountType.EXPENSE);
+            single.set(null, BudgetValuesTest.RENT, month, 2000 * month, Account.AccountType.EXPENSE);
+            }
+        Check.isTrue("rollUp matches set", Arrays.equals(batched.copyValues(), single.copyValues()));
+    }
+
+
+    /** 
+     * Check difference works out second - first for every month and the
+     * total, flags the rows that differ and counts them.
+     */
+    private static void testDifference() {
+        final int rows = 3;
+        final long[] first = new long[rows * BudgetValues.COLUMNS];
+        final long[] second = new long[rows * BudgetValues.COLUMNS];
+        for (int i = 0; i < first.length; i++)
+            {
+            first[i] = i * 10;
+            second[i] = i * 10;
+            }
+
+        // Row 0 is the same, row 1 differs in one month and row 2 in its total only
+        second[BudgetValues.COLUMNS + 3] += 25;
+        second[(2 * BudgetValues.COLUMNS) + 13] -= 7;
+
+        // Column 0 isn't a value so it's never compared
+        second[2 * BudgetValues.COLUMNS] += 1000;
+        second[0] += 1000;
+
+        final long[] deltas = new long[first.length];
+        final boolean[] differs = new boolean[rows];
+        Check.equal("rows that differ", 2, BudgetValues.difference(first, second, deltas, differs));
+        Check.isTrue("row 0 is the same", !differs[0]);
+        Check.isTrue("row 1 differs", differs[1]);
+        Check.isTrue("row 2 differs", differs[2]);
+        Check.equal("row 1 month 3 delta", 25, deltas[BudgetValues.COLUMNS + 3]);
+        Check.equal("row 1 month 4 delta", 0, deltas[BudgetValues.COLUMNS + 4]);
+        Check.equal("row 2 total delta", -7, deltas[(2 * BudgetValues.COLUMNS) + 13]);
+
+        // Negative differences in every month still flag the row
+        Arrays.fill(second, 0);
+        Check.equal("all rows differ", 3, BudgetValues.difference(first, second, deltas, differs));
+        Check.isTrue("row 0 differs when lower", differs[0]);
+    }
+}
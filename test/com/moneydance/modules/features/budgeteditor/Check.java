@@ -0,0 +1,94 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+/**
+* Minimal checks for the tests, which are run with "ant test". The tests are
+* plain classes with a main method so that nothing beyond the Moneydance
+* developer's kit is needed to build and run them.
+*
+* @author  Jerry Jones
+*/
+final class Check {
+    // The number of checks made
+    private static int checks = 0;
+
+    // The number of checks that failed
+    private static int failures = 0;
+
+    private Check() {
+    }
+
+
+    /** 
+     * Check that a value is what was expected.
+     * 
+     * @param what - Description of the value being checked.
+     * @param expected - The value expected.
+     * @param actual - The value found.
+     */
+    static void equal(final String what, final long expected, final long actual) {
+        Check.checks++;
+        if (expected != actual)
+            {
+            Check.failures++;
+            System.err.println("FAILED: "+what+" - expected "+expected+" but was "+actual+".");
+            }
+    }
+
+
+    /** 
+     * Check that a condition holds.
+     * 
+     * @param what - Description of the condition being checked.
+     * @param condition - The condition.
+     */
+    static void isTrue(final String what, final boolean condition) {
+        Check.checks++;
+        if (!condition)
+            {
+            Check.failures++;
+            System.err.println("FAILED: "+what+".");
+            }
+    }
+
+
+    /** 
+     * Report the results and exit with an error status if any check failed.
+     * 
+     * @param name - The name of the test.
+     */
+    static void finish(final String name) {
+        System.out.println(name+": "+(Check.checks - Check.failures)+" of "+Check.checks+" checks passed.");
+        if (Check.failures != 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2023, Jerry Jones
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */ 
+package com.moneydance.modules.features.budgeteditor;
+
+/**
+* Tests of CurrencyParser.parse for a currency with 2 decimal places and a
+* "$" prefix.
+*
+* @author  Jerry Jones
+*/
+final class CurrencyParserTest {
+    private CurrencyParserTest() {
+    }
+
+
+    /** 
+     * Run the tests.
+     * 
+     * @param args - Not used.
+     */
+    public static void main(final String[] args) {
+        final CurrencyParser parser = new CurrencyParser("$", null, 2);
+
+        // Decimal points
+        Check.equal("12", 1200, parser.parse("12"));
+        Check.equal("12.5", 1250, parser.parse("12.5"));
+        Check.equal("12.34", 1234, parser.parse("12.34"));
+        Check.equal("12,34", 1234, parser.parse("12,34"));
+        Check.equal(".5", 50, parser.parse(".5"));
+
+        // More digits after a separator than the currency has decimal places means it separates digits
+        Check.equal("1.000", 100000, parser.parse("1.000"));
+        Check.equal("1,000", 100000, parser.parse("1,000"));
+        Check.equal("1,234.56", 123456, parser.parse("1,234.56"));
+        Check.equal("1 234,56", 123456, parser.parse("1 234,56"));
+        Check.equal("1'234.56", 123456, parser.parse("1'234.56"));
+
+        // Currency symbol and spaces
+        Check.equal("$12.34", 1234, parser.parse("$12.34"));
+        Check.equal("  $ 12.34  ", 1234, parser.parse("  $ 12.34  "));
+
+        // Negative amounts
+        Check.equal("-12.34", -1234, parser.parse("-12.34"));
+        Check.equal("12.34-", -1234, parser.parse("12.34-"));
+        Check.equal("(12.34)", -1234, parser.parse("(12.34)"));
+        Check.equal("-$12.34", -1234, parser.parse("-$12.34"));
+        Check.equal("($1,234.56)", -123456, parser.parse("($1,234.56)"));
+        Check.equal("--12", CurrencyParser.INVALID, parser.parse("--12"));
+        Check.equal("(-12)", CurrencyParser.INVALID, parser.parse("(-12)"));
+
+        // 18 digits fit in a long, counting the decimal places made up
+        Check.equal("1234567890123456", 123456789012345600L, parser.parse("1234567890123456"));
+        Check.equal("1234567890123456.78", 123456789012345678L, parser.parse("1234567890123456.78"));
+        Check.equal("12345678901234567", CurrencyParser.INVALID, parser.parse("12345678901234567"));
+        Check.equal("1234567890123456789", CurrencyParser.INVALID, parser.parse("1234567890123456789"));
+        Check.equal("99999999999999999999", CurrencyParser.INVALID, parser.parse("99999999999999999999"));
+
+        // Text that isn't an amount
+        Check.equal("empty", CurrencyParser.INVALID, parser.parse(""));
+        Check.equal("spaces", CurrencyParser.INVALID, parser.parse("   "));
+        Check.equal("$", CurrencyParser.INVALID, parser.parse("$"));
+        Check.equal("abc", CurrencyParser.INVALID, parser.parse("abc"));
+        Check.equal("12a", CurrencyParser.INVALID, parser.parse("12a"));
+        Check.equal("12.3x", CurrencyParser.INVALID, parser.parse("12.3x"));
+        Check.equal("()", CurrencyParser.INVALID, parser.parse("()"));
+
+        // Part of some text
+        Check.equal("part of a line", 1234, parser.parse("a\t12.34\tb", 2, 7));
+
+        // Currencies without decimal places take no decimal point
+        final CurrencyParser whole = new CurrencyParser(null, null, 0);
+        Check.equal("whole 1.000", 1000, whole.parse("1.000"));
+        Check.equal("whole 12-", -12, whole.parse("12-"));
+
+        Check.finish("CurrencyParserTest");
+    }
+}